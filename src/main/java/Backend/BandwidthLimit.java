@@ -0,0 +1,117 @@
+package Backend;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class combines the limiters that apply to one download: the global one, the one of its host and its own.
+ * All the connections of the download share it, and every byte they receive is counted against all three limiters,
+ * so the slowest of them sets the pace.
+ */
+public class BandwidthLimit {
+    private final RateLimiter hostLimiter;
+    private final RateLimiter jobLimiter;
+
+    /**
+     * @param host the host the download comes from, or null if it is not known
+     * @param jobRate the limit of this download alone in bytes per second, or {@link RateLimiter#UNLIMITED}
+     */
+    public BandwidthLimit(String host, long jobRate) {
+        this(host == null ? null : RateLimiter.forHost(host), new RateLimiter(jobRate));
+    }
+
+    private BandwidthLimit(RateLimiter hostLimiter, RateLimiter jobLimiter) {
+        this.hostLimiter = hostLimiter;
+        this.jobLimiter = jobLimiter;
+    }
+
+    /**
+     * @param link the link of the download, whose host decides which host limit applies
+     * @param jobRate the limit of this download alone in bytes per second, or {@link RateLimiter#UNLIMITED}
+     */
+    public static BandwidthLimit forLink(String link, long jobRate) {
+        String host;
+        try {
+            host = URI.create(link).getHost();
+        } catch (IllegalArgumentException e) {
+            host = null;
+        }
+        return new BandwidthLimit(host, jobRate);
+    }
+
+    /**
+     * @return the limits for the requests of the same download that go to a mirror on another host, which share the
+     * limit of this download alone
+     */
+    public BandwidthLimit forHost(String host) {
+        return new BandwidthLimit(host == null ? null : RateLimiter.forHost(host), jobLimiter);
+    }
+
+    /**
+     * @return the limiter of this download alone, whose rate can be changed while it is running
+     */
+    public RateLimiter getJobLimiter() {
+        return jobLimiter;
+    }
+
+    /**
+     * @return the lowest of the limits that apply, or {@link RateLimiter#UNLIMITED} if there is none
+     */
+    public long getRate() {
+        long rate = RateLimiter.UNLIMITED;
+        for (RateLimiter limiter : getLimiters()) {
+            long limiterRate = limiter.getRate();
+            if (limiterRate != RateLimiter.UNLIMITED && (rate == RateLimiter.UNLIMITED || limiterRate < rate)) {
+                rate = limiterRate;
+            }
+        }
+        return rate;
+    }
+
+    /**
+     * @return the arguments that make yt-dlp keep to the same limit, which is fixed once its process has started
+     */
+    public List<String> getYtDlpArguments() {
+        long rate = getRate();
+        if (rate == RateLimiter.UNLIMITED) {
+            return List.of();
+        }
+        return List.of("--limit-rate", RateLimiter.formatRate(rate));
+    }
+
+    /**
+     * @return how many bytes a connection should read at most before calling {@link #acquire(long)}
+     */
+    public long getStepSize() {
+        long stepSize = Long.MAX_VALUE;
+        for (RateLimiter limiter : getLimiters()) {
+            stepSize = Math.min(stepSize, limiter.getStepSize());
+        }
+        return stepSize;
+    }
+
+    /**
+     * Counts the bytes a connection received and waits as long as the limits require before it may receive more.
+     */
+    public void acquire(long bytes) {
+        long wait = 0;
+        for (RateLimiter limiter : getLimiters()) {
+            wait = Math.max(wait, limiter.reserve(bytes));
+        }
+        if (wait > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(wait);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private RateLimiter[] getLimiters() {
+        if (hostLimiter == null) {
+            return new RateLimiter[]{RateLimiter.GLOBAL, jobLimiter};
+        }
+        return new RateLimiter[]{RateLimiter.GLOBAL, hostLimiter, jobLimiter};
+    }
+}
@@ -0,0 +1,123 @@
+package Backend;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class adds up the progress of the downloads of a batch that run at the same time, so that the front end can
+ * show the throughput of the whole batch and the time left until all of its jobs are done.
+ * The size of the jobs that have not started yet is not known, so they are counted with the average size of the files
+ * seen so far.
+ */
+public class BatchProgress {
+    public static final int DEFAULT_CONCURRENT_JOBS = 3;
+    private final Set<DownloadProgress> running = ConcurrentHashMap.newKeySet();
+    private final int totalJobs;
+    private final AtomicInteger finishedJobs = new AtomicInteger();
+    private final AtomicInteger sizedFiles = new AtomicInteger(); // files that started with a known size
+    private final AtomicLong sizeOfSizedFiles = new AtomicLong();
+    private final AtomicLong finishedBytes = new AtomicLong();
+
+    public BatchProgress(int totalJobs) {
+        this.totalJobs = totalJobs;
+    }
+
+    /**
+     * Called when a download of the batch starts receiving data.
+     */
+    public void add(DownloadProgress progress) {
+        if (progress.getTotalSize() > 0) {
+            sizedFiles.incrementAndGet();
+            sizeOfSizedFiles.addAndGet(progress.getTotalSize());
+        }
+        running.add(progress);
+    }
+
+    /**
+     * Called when a download of the batch is over, whether it is complete or not.
+     */
+    public void remove(DownloadProgress progress) {
+        if (running.remove(progress)) {
+            finishedBytes.addAndGet(progress.getTransferredBytes());
+        }
+    }
+
+    /**
+     * Called once for every job of the batch that is done, including the ones that never started a download.
+     */
+    public void jobFinished() {
+        finishedJobs.incrementAndGet();
+    }
+
+    public int getTotalJobs() {
+        return totalJobs;
+    }
+
+    public int getFinishedJobs() {
+        return finishedJobs.get();
+    }
+
+    public int getRunningJobs() {
+        return running.size();
+    }
+
+    /**
+     * @return the bytes received by all the downloads of the batch so far
+     */
+    public long getTransferredBytes() {
+        long bytes = finishedBytes.get();
+        for (DownloadProgress progress : running) {
+            bytes += progress.getTransferredBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return the combined speed of the running downloads in bytes per second
+     */
+    public double getSpeed() {
+        double speed = 0;
+        for (DownloadProgress progress : running) {
+            speed += progress.getSpeed();
+        }
+        return speed;
+    }
+
+    /**
+     * @return the part of the batch that is done, between 0 and 1, where every job weighs the same
+     */
+    public double getFractionDone() {
+        if (totalJobs == 0) {
+            return 1;
+        }
+        double jobsDone = finishedJobs.get();
+        for (DownloadProgress progress : running) {
+            if (progress.getTotalSize() > 0) {
+                jobsDone += Math.min(1, (double) progress.getDownloadedBytes() / progress.getTotalSize());
+            }
+        }
+        return Math.min(1, jobsDone / totalJobs);
+    }
+
+    /**
+     * @return the estimated number of seconds until every job of the batch is done, or -1 if it cannot be estimated yet
+     */
+    public long getSecondsLeft() {
+        double speed = getSpeed();
+        int files = sizedFiles.get();
+        if (speed < 1 || files == 0) {
+            return -1;
+        }
+        long bytesLeft = 0;
+        for (DownloadProgress progress : running) {
+            if (progress.getTotalSize() > 0) {
+                bytesLeft += Math.max(0, progress.getTotalSize() - progress.getDownloadedBytes());
+            }
+        }
+        int jobsNotStarted = Math.max(0, totalJobs - finishedJobs.get() - running.size());
+        bytesLeft += jobsNotStarted * (sizeOfSizedFiles.get() / files);
+        return (long) Math.ceil(bytesLeft / speed);
+    }
+}
@@ -0,0 +1,36 @@
+package Backend;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class keeps a small stock of large direct buffers that the download loops read into and write from.
+ * Direct buffers are handed to the operating system without an extra copy, but they are expensive to allocate,
+ * so they are reused from one segment to the next instead of being created for every read.
+ */
+public final class BufferPool {
+    public static final int BUFFER_SIZE = 1024 * 1024; // 1 MB, the size of the steps the segments are written in
+    private static final int MAX_POOLED_BUFFERS = 32;
+    private static final BlockingQueue<ByteBuffer> BUFFERS = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private BufferPool() {
+    }
+
+    public static ByteBuffer acquire() {
+        ByteBuffer buffer = BUFFERS.poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+        return buffer.clear();
+    }
+
+    /**
+     * Gives a buffer back to the pool. If the pool is full, the buffer is left to the garbage collector.
+     */
+    public static void release(ByteBuffer buffer) {
+        if (buffer != null) {
+            BUFFERS.offer(buffer);
+        }
+    }
+}
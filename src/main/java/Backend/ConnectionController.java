@@ -0,0 +1,140 @@
+package Backend;
+
+import java.net.HttpURLConnection;
+import java.net.http.HttpHeaders;
+
+/**
+ * This class decides how many connections a multithreaded download should use while it is running.
+ * It starts with a few connections and, every couple of seconds, measures the total throughput. As long as
+ * every added connection still brings a reasonable share of extra throughput, another one is added; once
+ * an added connection stops paying off, the count is stepped back and only probed again after a while.
+ * When the server answers with a throttling response (429 or 503), the count is halved and capped for a
+ * cool-down period so that rate-limited hosts are not hammered.
+ */
+public class ConnectionController {
+    private static final long EVALUATION_INTERVAL = 2000; // 2 seconds
+    private static final long PROBE_INTERVAL = 10000; // 10 seconds
+    private static final long THROTTLE_COOL_DOWN = 30000; // 30 seconds
+    private static final long DEFAULT_RETRY_AFTER = 2000; // 2 seconds
+    private static final double MIN_GAIN_RATIO = 0.5; // an added connection must bring at least half of the average speed per connection
+    private final int maxConnections;
+    private int targetConnections;
+    private int activeConnections;
+    private int ceiling;
+    private boolean probing = true;
+    private long lastEvaluation;
+    private long bytesAtLastEvaluation;
+    private double throughputAtLastEvaluation;
+    private int connectionsAtLastEvaluation;
+    private long settledAt;
+    private long ceilingExpiresAt;
+    private long resumeAt;
+    private double speedPerConnection;
+
+    public ConnectionController(int initialConnections, int maxConnections) {
+        this.maxConnections = maxConnections;
+        this.targetConnections = Math.min(initialConnections, maxConnections);
+        this.ceiling = maxConnections;
+    }
+
+    public static boolean isThrottlingResponse(int responseCode) {
+        return responseCode == 429 || responseCode == HttpURLConnection.HTTP_UNAVAILABLE;
+    }
+
+    public static long getRetryAfter(HttpHeaders headers) {
+        String retryAfter = headers.firstValue("Retry-After").orElse(null);
+        if (retryAfter != null) {
+            try {
+                return Long.parseLong(retryAfter.trim()) * 1000;
+            } catch (NumberFormatException ignored) { // the header can also be an HTTP date, in which case the default wait is used
+            }
+        }
+        return DEFAULT_RETRY_AFTER;
+    }
+
+    /**
+     * Reserves a slot for a new connection if the controller wants more connections than are currently running.
+     * @return true if the caller should start another connection
+     */
+    public synchronized boolean tryAddConnection() {
+        if (System.currentTimeMillis() < resumeAt || activeConnections >= targetConnections) {
+            return false;
+        }
+        activeConnections++;
+        return true;
+    }
+
+    /**
+     * Called by a connection between two segments. If there are more connections running than wanted,
+     * the slot of the caller is released.
+     * @return true if the caller should stop
+     */
+    public synchronized boolean retireIfAboveTarget() {
+        if (activeConnections > targetConnections) {
+            activeConnections--;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Releases the slot of a connection that stopped for any other reason than {@link #retireIfAboveTarget()}.
+     */
+    public synchronized void connectionClosed() {
+        activeConnections--;
+    }
+
+    public synchronized void onThrottled(long retryAfter) {
+        long now = System.currentTimeMillis();
+        targetConnections = Math.max(1, targetConnections / 2);
+        ceiling = targetConnections;
+        ceilingExpiresAt = now + THROTTLE_COOL_DOWN;
+        resumeAt = Math.max(resumeAt, now + retryAfter);
+        probing = false;
+        settledAt = now;
+    }
+
+    /**
+     * Feeds the total number of bytes downloaded so far into the controller. This is meant to be called
+     * regularly by the thread that watches over the download.
+     */
+    public synchronized void update(long totalBytes) {
+        long now = System.currentTimeMillis();
+        if (lastEvaluation == 0) {
+            lastEvaluation = now;
+            bytesAtLastEvaluation = totalBytes;
+            return;
+        }
+        long elapsed = now - lastEvaluation;
+        if (elapsed < EVALUATION_INTERVAL) {
+            return;
+        }
+        double throughput = (totalBytes - bytesAtLastEvaluation) * 1000.0 / elapsed;
+        int connections = activeConnections;
+        lastEvaluation = now;
+        bytesAtLastEvaluation = totalBytes;
+        if (connections > 0) {
+            speedPerConnection = throughput / connections;
+        }
+        if (now >= ceilingExpiresAt) {
+            ceiling = maxConnections;
+        }
+        boolean addedConnection = connectionsAtLastEvaluation > 0 && connections > connectionsAtLastEvaluation;
+        double expectedGain = connectionsAtLastEvaluation > 0 ? throughputAtLastEvaluation / connectionsAtLastEvaluation * MIN_GAIN_RATIO : 0;
+        if (addedConnection && throughput - throughputAtLastEvaluation < expectedGain) {
+            // the last connection that was added did not pay off, so step back and wait before probing again
+            targetConnections = connectionsAtLastEvaluation;
+            probing = false;
+            settledAt = now;
+        } else if (connections >= targetConnections && targetConnections < ceiling && (probing || now - settledAt >= PROBE_INTERVAL)) {
+            targetConnections++;
+            probing = true;
+        }
+        throughputAtLastEvaluation = throughput;
+        connectionsAtLastEvaluation = connections;
+    }
+
+    public synchronized double getSpeedPerConnection() {
+        return speedPerConnection;
+    }
+}
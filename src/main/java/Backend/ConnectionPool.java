@@ -0,0 +1,71 @@
+package Backend;
+
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * This class keeps the connections of a batch of downloads warm from one file to the next. Every origin (scheme, host
+ * and port) gets one {@link HttpTransport}, whose idle keep-alive connections and TLS sessions are reused by the next
+ * file from the same host instead of paying for a new handshake per file. Transports that have not been used for
+ * longer than the idle timeout are closed, and once the pool is full, the least recently used one makes room.
+ */
+public class ConnectionPool {
+    public static final long DEFAULT_IDLE_TIMEOUT = 30; // seconds
+    public static final int DEFAULT_MAX_SIZE = 16;
+    private final long idleTimeout;
+    private final int maxSize;
+    private final LinkedHashMap<String, HttpTransport> transports = new LinkedHashMap<>(16, 0.75f, true); // least recently used first
+
+    public ConnectionPool() {
+        this(DEFAULT_IDLE_TIMEOUT, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param idleTimeout the number of seconds an unused connection is kept open
+     * @param maxSize the maximum number of hosts to keep connections to
+     */
+    public ConnectionPool(long idleTimeout, int maxSize) {
+        this.idleTimeout = idleTimeout * 1000;
+        this.maxSize = Math.max(1, maxSize);
+        // The JDK reads this property only once, when the first HttpClient of the JVM is created, and applies it to every
+        // client from then on, so a pool created later with another idle timeout cannot change it. Such pools still
+        // close their connections by closing the transports that stay idle for longer than their own timeout.
+        if (System.getProperty("jdk.httpclient.keepalive.timeout") == null) {
+            System.setProperty("jdk.httpclient.keepalive.timeout", String.valueOf(idleTimeout));
+        }
+    }
+
+    public synchronized HttpTransport get(URL url) {
+        removeIdleTransports();
+        String origin = getOrigin(url);
+        HttpTransport transport = transports.get(origin);
+        if (transport == null) {
+            if (transports.size() >= maxSize) {
+                Iterator<HttpTransport> leastRecentlyUsed = transports.values().iterator();
+                leastRecentlyUsed.next().close();
+                leastRecentlyUsed.remove();
+            }
+            transport = new HttpTransport();
+            transports.put(origin, transport);
+        }
+        return transport;
+    }
+
+    private void removeIdleTransports() {
+        long now = System.currentTimeMillis();
+        Iterator<HttpTransport> iterator = transports.values().iterator();
+        while (iterator.hasNext()) {
+            HttpTransport transport = iterator.next();
+            if (now - transport.getLastUsed() > idleTimeout) {
+                transport.close();
+                iterator.remove();
+            }
+        }
+    }
+
+    private static String getOrigin(URL url) {
+        int port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+        return url.getProtocol().toLowerCase() + "://" + url.getHost().toLowerCase() + ":" + port;
+    }
+}
@@ -0,0 +1,153 @@
+package Backend;
+
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PushbackInputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.net.http.HttpHeaders;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * This class negotiates compressed transfers with the server and decodes the compressed data while it is streamed to
+ * disk. Gzip and deflate are always understood; brotli only if a brotli decoder (org.brotli:dec) is on the classpath.
+ */
+public final class ContentDecoder {
+    private static final String GZIP = "gzip";
+    private static final String DEFLATE = "deflate";
+    private static final String BROTLI = "br";
+    private static final String BROTLI_DECODER = "org.brotli.dec.BrotliInputStream";
+    private static final boolean BROTLI_AVAILABLE = isClassAvailable(BROTLI_DECODER);
+
+    private ContentDecoder() {
+    }
+
+    /**
+     * @return the value of the Accept-Encoding header listing every encoding that can be decoded
+     */
+    public static String getAcceptEncoding() {
+        return BROTLI_AVAILABLE ? GZIP + ", " + DEFLATE + ", " + BROTLI : GZIP + ", " + DEFLATE;
+    }
+
+    /**
+     * @return the encoding the server applied to the body, in lower case, or null if the body is the file itself
+     */
+    public static String getContentEncoding(HttpHeaders headers) {
+        String encoding = headers.firstValue("Content-Encoding").orElse("").trim().toLowerCase(Locale.ROOT);
+        return encoding.isEmpty() || encoding.equals("identity") ? null : encoding;
+    }
+
+    public static boolean canDecode(String encoding) {
+        return switch (encoding) {
+            case GZIP, "x-gzip", DEFLATE -> true;
+            case BROTLI -> BROTLI_AVAILABLE;
+            default -> false;
+        };
+    }
+
+    /**
+     * @return true if the name of the file asks for the encoded data itself, like a .gz file sent with gzip encoding
+     */
+    public static boolean isEncodedFile(File file, String encoding) {
+        String name = file.getName().toLowerCase(Locale.ROOT);
+        return switch (encoding) {
+            case GZIP, "x-gzip" -> name.endsWith(".gz") || name.endsWith(".tgz");
+            case DEFLATE -> name.endsWith(".zz");
+            case BROTLI -> name.endsWith(".br");
+            default -> false;
+        };
+    }
+
+    /**
+     * Wraps the body of a response in a stream that decodes it. The encoding must be one of {@link #canDecode(String)}.
+     */
+    public static InputStream decode(InputStream body, String encoding) throws IOException {
+        return switch (encoding) {
+            case GZIP, "x-gzip" -> new GZIPInputStream(body, 64 * 1024);
+            case DEFLATE -> inflate(body);
+            case BROTLI -> newBrotliInputStream(body);
+            default -> throw new IOException("Unsupported content encoding " + encoding);
+        };
+    }
+
+    /**
+     * HTTP deflate is meant to be zlib data, but some servers send raw deflate data, so the first two bytes decide.
+     */
+    private static InputStream inflate(InputStream body) throws IOException {
+        PushbackInputStream in = new PushbackInputStream(body, 2);
+        int first = in.read();
+        int second = in.read();
+        if (second != -1) {
+            in.unread(second);
+        }
+        if (first != -1) {
+            in.unread(first);
+        }
+        boolean zlib = first != -1 && second != -1 && (first & 0x0F) == 8 && ((first << 8) | second) % 31 == 0;
+        return new InflaterInputStream(in, new Inflater(!zlib), 64 * 1024);
+    }
+
+    private static InputStream newBrotliInputStream(InputStream body) throws IOException {
+        try {
+            return (InputStream) Class.forName(BROTLI_DECODER).getConstructor(InputStream.class).newInstance(body);
+        } catch (InvocationTargetException e) {
+            throw new IOException("Failed to start decoding brotli data : " + e.getCause().getMessage(), e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new IOException("No brotli decoder is available", e);
+        }
+    }
+
+    private static boolean isClassAvailable(String className) {
+        try {
+            Class.forName(className, false, ContentDecoder.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+
+    /**
+     * This class counts the bytes read from the network, before they are decoded, so that the progress and the
+     * bandwidth limits follow the transfer rather than the size of the file.
+     */
+    static final class CountingInputStream extends FilterInputStream {
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int value = super.read();
+            if (value != -1) {
+                count++;
+            }
+            return value;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int bytesRead = super.read(buffer, offset, length);
+            if (bytesRead > 0) {
+                count += bytesRead;
+            }
+            return bytesRead;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        long getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,439 @@
+package Backend;
+
+import Enums.UnitConverter;
+import Preferences.AppSettings;
+import Utils.Environment;
+import Utils.MessageBroker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static Utils.DriftyConstants.NOT_ENOUGH_SPACE_F;
+
+/**
+ * This class downloads a file over HTTP for both the CLI and the GUI.
+ * If the server accepts ranges and the file is large enough, the file is split into segments that several connections
+ * download straight into their own region of the target file, from the link itself and from any mirror of it, while
+ * the thread that called {@link #download()} keeps adjusting the number of connections and saving the resume journal.
+ * Otherwise, the file is streamed over a single connection, compressed on the wire if the server offers it, and decoded
+ * on the way to the disk. Either way, the checksums are computed while the bytes arrive, and the front end follows the download
+ * through a {@link ProgressListener}.
+ */
+public class DownloadEngine {
+    private static final MessageBroker M = Environment.getMessageBroker();
+    private static final long MONITOR_INTERVAL = 100; // milliseconds between two progress updates of a multithreaded download
+    private final HttpTransport transport;
+    private final URL url;
+    private final File file;
+    private final BandwidthLimit bandwidthLimit;
+    private final ProgressListener listener;
+    private final MirrorSet mirrors;
+    private final DownloadMetrics downloadMetrics = new DownloadMetrics();
+    private HttpHeaders headers;
+    private Validators previousValidators;
+    private boolean notModified;
+    private HttpResponse<InputStream> firstResponse; // the answer to the probe, whose body is the start of the file until it is used
+    private String contentEncoding; // the encoding of the body to decode while it is streamed, or null to write the body as it is
+    private StreamingChecksum checksum;
+    private boolean fileChanged; // whether the server sent a newer version of the file than the ranges already on disk
+    private volatile long rangeableSize = -1; // the size of a file streamed without a known size, once the server is found to accept ranges of it
+
+    /**
+     * @param transport the connection(s) to the host of the file, usually taken from a {@link ConnectionPool}
+     * @param file the target file, which is overwritten unless an interrupted download of it can be resumed
+     */
+    public DownloadEngine(HttpTransport transport, URL url, File file, BandwidthLimit bandwidthLimit, ProgressListener listener) {
+        this.transport = transport;
+        this.url = url;
+        this.file = file;
+        this.bandwidthLimit = bandwidthLimit;
+        this.listener = listener;
+        this.mirrors = new MirrorSet(new Mirror(url, transport, bandwidthLimit));
+    }
+
+    /**
+     * Adds another link to the same file, e.g. on a mirror server. If the download is split across several
+     * connections, they are spread over all the links that turn out to serve the same file, according to the speed
+     * of each one. It has to be called before {@link #probe()}.
+     * @param transport the connection(s) to the host of the mirror, usually taken from a {@link ConnectionPool}
+     */
+    public void addMirror(HttpTransport transport, URL url) {
+        mirrors.add(new Mirror(url, transport, bandwidthLimit.forHost(url.getHost())));
+    }
+
+    /**
+     * Makes the download conditional: if the target file is still the one downloaded last time, the server is asked
+     * to send it only if it has changed since. It has to be called before {@link #probe()}.
+     * @param validators the validators stored after the last download of the same link
+     */
+    public void setPreviousValidators(Validators validators) {
+        this.previousValidators = validators;
+    }
+
+    /**
+     * Asks the server for the file and decides from its answer whether the file is split across several connections.
+     * The request is a normal download of the whole file, whose data becomes the first segment, or the whole file if
+     * it is not split, so no round trip is spent on the question alone.
+     * It is called by {@link #download()} if it was not called before.
+     */
+    public void probe() throws IOException {
+        boolean conditional = previousValidators != null && previousValidators.canRevalidate(file);
+        boolean compressedTransfers = AppSettings.get.compressedTransfers();
+        HttpResponse<InputStream> response = transport.getFromStart(url, conditional ? previousValidators : null, compressedTransfers ? ContentDecoder.getAcceptEncoding() : null);
+        if (response.statusCode() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+            response.body().close();
+            notModified = true;
+            return;
+        }
+        if (response.statusCode() >= HttpURLConnection.HTTP_BAD_REQUEST) {
+            response.body().close();
+            throw new IOException("Server returned HTTP " + response.statusCode());
+        }
+        firstResponse = response;
+        headers = response.headers();
+        boolean acceptsRanges = response.statusCode() == HttpURLConnection.HTTP_PARTIAL;
+        long totalSize = acceptsRanges ? HttpTransport.getTotalSize(headers) : headers.firstValueAsLong("Content-Length").orElse(-1);
+        downloadMetrics.setTotalSize(totalSize);
+        downloadMetrics.setETag(headers.firstValue("ETag").orElse(null));
+        downloadMetrics.setLastModified(headers.firstValue("Last-Modified").orElse(null));
+        // the ranges of an encoded body are ranges of the compressed data, which cannot be written where they belong in the file
+        String encoding = ContentDecoder.getContentEncoding(headers);
+        downloadMetrics.setMultithreaded(totalSize > downloadMetrics.getMultiThreadingThreshold(url.getHost()) && acceptsRanges && encoding == null);
+        if (downloadMetrics.isMultithreaded()) {
+            mirrors.verify(totalSize, downloadMetrics.getETag());
+        }
+        if (encoding != null && compressedTransfers && ContentDecoder.canDecode(encoding) && !ContentDecoder.isEncodedFile(file, encoding)) {
+            contentEncoding = encoding;
+        }
+        // the digests sent by the server are those of the body, which is not the file once it is decoded
+        checksum = new StreamingChecksum(StreamingChecksum.parseAlgorithms(AppSettings.get.checksumAlgorithms()), contentEncoding == null ? headers : null);
+    }
+
+    public long getTotalSize() {
+        return downloadMetrics.getTotalSize();
+    }
+
+    public boolean isMultithreaded() {
+        return downloadMetrics.isMultithreaded();
+    }
+
+    /**
+     * @return true if the file on disk is already up to date, in which case {@link #download()} does not transfer anything
+     */
+    public boolean isNotModified() {
+        return notModified;
+    }
+
+    /**
+     * @return the validators to store for the next download of the same link, or null if the file was not
+     * downloaded completely
+     */
+    public Validators getValidators() {
+        if (notModified) {
+            return previousValidators;
+        }
+        Map<String, String> checksums = getChecksums();
+        if (checksums == null) {
+            return null;
+        }
+        return new Validators(downloadMetrics.getETag(), downloadMetrics.getLastModified(), file.length(), checksums);
+    }
+
+    /**
+     * @return the checksums of the downloaded file, or null if it was not downloaded completely
+     */
+    public Map<String, String> getChecksums() {
+        return checksum == null ? null : checksum.getChecksums();
+    }
+
+    /**
+     * Downloads the file and reports its checksums.
+     * @return true if the whole file was downloaded and matches the digests sent by the server, if any
+     */
+    public boolean download() throws IOException {
+        if (headers == null && !notModified) {
+            probe();
+        }
+        if (notModified) {
+            return true;
+        }
+        boolean complete = false;
+        try {
+            complete = downloadMetrics.isMultithreaded() ? downloadSegments() : downloadStream();
+            if (!complete && fileChanged) { // the ranges on disk belong to the old version, so the download starts over, once
+                M.msgDownloadInfo("\"" + file.getName() + "\" changed on the server during the download, starting over ...");
+                fileChanged = false;
+                previousValidators = null;
+                closeFirstResponse();
+                probe();
+                complete = !notModified && (downloadMetrics.isMultithreaded() ? downloadSegments() : downloadStream());
+            }
+        } finally {
+            closeFirstResponse(); // if the download ended before the data of the probe was used
+            listener.onFinish(complete);
+        }
+        return complete && checksum.report(file.getName());
+    }
+
+    private boolean downloadSegments() throws IOException {
+        long totalSize = downloadMetrics.getTotalSize();
+        // the journal keeps track of the downloaded parts so that an interrupted download only needs to fetch the missing ones
+        DownloadJournal journal = DownloadJournal.open(file, url, downloadMetrics.getETag(), downloadMetrics.getLastModified(), totalSize);
+        if (!hasFreeSpace(totalSize - journal.getCompletedBytes())) {
+            return false;
+        }
+        DownloadProgress progress = new DownloadProgress(totalSize, journal.getCompletedBytes());
+        listener.onStart(progress);
+        return downloadSegments(journal, progress);
+    }
+
+    private boolean downloadSegments(DownloadJournal journal, DownloadProgress progress) throws IOException {
+        long totalSize = downloadMetrics.getTotalSize();
+        List<DownloaderThread> downloaderThreads = new ArrayList<>();
+        List<CompletableFuture<Void>> workers = new ArrayList<>(); // the future of each of the threads, in the same order
+        // the threads keep pulling ranges from the scheduler and write them straight into their own region of the pre-sized target file
+        List<Segment> missingRanges = journal.getMissingRanges();
+        mirrors.getPrimary().setIfRange(journal.getIfRange()); // every range must belong to the same version of the file as the journal
+        SegmentScheduler scheduler = new SegmentScheduler(missingRanges, downloadMetrics.getMaxThreadCount());
+        checksum.alreadyWritten(missingRanges, totalSize);
+        ConnectionController connectionController = new ConnectionController(downloadMetrics.getThreadCount(), downloadMetrics.getMaxThreadCount());
+        boolean failed = false;
+        boolean complete;
+        if (missingRanges.isEmpty() || missingRanges.get(0).getStart() != 0) { // the data of the probe is only of use if the start of the file is missing
+            closeFirstResponse();
+        }
+        FsyncPolicy fsyncPolicy = FsyncPolicy.parse(AppSettings.get.fsyncPolicy());
+        // unless they write through memory-mapped windows, the threads hand their data to writer threads, so that a slow disk does not hold up the network
+        try (SegmentedFileWriter fileWriter = new SegmentedFileWriter(file, totalSize, AppSettings.get.memoryMappedOutput());
+             WriteBehindQueue writeQueue = fileWriter.isMemoryMapped() ? null : new WriteBehindQueue(fileWriter, journal, checksum, fsyncPolicy)) {
+            startDownloaderThreads(downloaderThreads, workers, fileWriter, writeQueue, journal, progress, scheduler, connectionController);
+            // keep adjusting the number of threads until all the parts are downloaded
+            while (!workers.isEmpty() || !(scheduler.isComplete() || failed)) {
+                DownloadExecutor.awaitAll(workers, MONITOR_INTERVAL); // returns as soon as the last thread is done
+                failed |= removeFinishedThreads(downloaderThreads, workers);
+                progress.sample();
+                connectionController.update(progress.getTransferredBytes());
+                mirrors.update();
+                listener.onProgress(progress);
+                if (!failed) { // the threads that are still running finish their segments, but no new ones are started
+                    startDownloaderThreads(downloaderThreads, workers, fileWriter, writeQueue, journal, progress, scheduler, connectionController);
+                }
+                journal.flushIfDue();
+                checksum.catchUp(fileWriter);
+            }
+            if (writeQueue != null) {
+                writeQueue.finish(); // throws if any of the data could not be written
+            } else if (fsyncPolicy.syncsAtEnd()) {
+                fileWriter.sync();
+            }
+            complete = scheduler.isComplete();
+            if (complete) {
+                checksum.finish(fileWriter);
+            }
+        }
+        DownloadMetrics.recordConnectionSpeed(url.getHost(), connectionController.getSpeedPerConnection());
+        if (complete || fileChanged) {
+            journal.delete();
+        } else {
+            journal.flush();
+        }
+        return complete;
+    }
+
+    /**
+     * Streams the file over the connection of the probe. If the server did not tell the size of the file, it is asked
+     * for the first byte alone in the background, and if that reveals a file that is large enough and accepts ranges
+     * after all, the stream stops at the next block of the journal and the rest of the file is downloaded in segments.
+     */
+    private boolean downloadStream() throws IOException {
+        if (downloadMetrics.getTotalSize() > 0 && !hasFreeSpace(downloadMetrics.getTotalSize() - (file.isFile() ? file.length() : 0))) { // the file is overwritten, which frees its space
+            return false;
+        }
+        HttpResponse<InputStream> response = firstResponse; // the whole file, from the first byte on
+        firstResponse = null;
+        DownloadProgress progress = new DownloadProgress(downloadMetrics.getTotalSize(), 0);
+        listener.onStart(progress);
+        long startTime = System.currentTimeMillis();
+        CompletableFuture<Void> rangeProbe = null;
+        if (downloadMetrics.getTotalSize() == -1 && ContentDecoder.getContentEncoding(headers) == null) {
+            rangeProbe = DownloadExecutor.start(() -> rangeableSize = probeRanges());
+        }
+        FsyncPolicy fsyncPolicy = FsyncPolicy.parse(AppSettings.get.fsyncPolicy());
+        long unsyncedBytes = 0;
+        long writtenBytes = 0;
+        long switchPosition = -1; // where the stream stops and the segments take over, once it is known
+        // the progress and the bandwidth limits count the bytes received, which is what the size stated by the server is about
+        try (ContentDecoder.CountingInputStream body = new ContentDecoder.CountingInputStream(response.body());
+             StreamReader reader = new StreamReader(contentEncoding == null ? body : ContentDecoder.decode(body, contentEncoding)); FileChannel out = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer data;
+            long receivedBytes = 0;
+            while (writtenBytes != switchPosition && (data = reader.read(switchPosition == -1 ? bandwidthLimit.getStepSize() : Math.min(bandwidthLimit.getStepSize(), switchPosition - writtenBytes))) != null) {
+                writtenBytes += data.remaining();
+                unsyncedBytes += data.remaining();
+                checksum.update(data);
+                while (data.hasRemaining()) {
+                    out.write(data);
+                }
+                if (fsyncPolicy.isDue(unsyncedBytes)) {
+                    out.force(false);
+                    unsyncedBytes = 0;
+                }
+                int bytesRead = (int) (body.getCount() - receivedBytes);
+                receivedBytes = body.getCount();
+                progress.add(bytesRead);
+                progress.sample();
+                listener.onProgress(progress);
+                bandwidthLimit.acquire(bytesRead);
+                if (rangeProbe != null && rangeProbe.isDone()) {
+                    rangeProbe = null;
+                    switchPosition = getSwitchPosition(writtenBytes);
+                }
+            }
+            if (fsyncPolicy.syncsAtEnd()) {
+                out.force(false);
+            }
+        }
+        if (switchPosition != -1) {
+            return continueInSegments(progress, switchPosition);
+        }
+        long downloadedBytes = progress.getDownloadedBytes();
+        DownloadMetrics.recordConnectionSpeed(url.getHost(), downloadedBytes * 1000.0 / Math.max(System.currentTimeMillis() - startTime, 1));
+        long totalSize = downloadMetrics.getTotalSize();
+        boolean complete = totalSize == -1 || downloadedBytes == totalSize;
+        if (complete) {
+            checksum.finish(null);
+        }
+        return complete;
+    }
+
+    /**
+     * Asks for the first byte of the file alone, to find out whether the server accepts ranges of it after all.
+     * @return the size of the file, or -1 if the server does not send ranges of it, or may not be sending the same file
+     */
+    private long probeRanges() {
+        try {
+            HttpResponse<InputStream> response = transport.getRange(url, 0, 0);
+            response.body().close();
+            if (response.statusCode() != HttpURLConnection.HTTP_PARTIAL) { // throttled, so better not to add connections
+                return -1;
+            }
+            HttpHeaders rangeHeaders = response.headers();
+            // without a validator, there is no way to tell whether both requests got the same file
+            String eTag = downloadMetrics.getETag();
+            String lastModified = downloadMetrics.getLastModified();
+            boolean sameFile = eTag != null ? eTag.equals(rangeHeaders.firstValue("ETag").orElse(null)) : lastModified != null && lastModified.equals(rangeHeaders.firstValue("Last-Modified").orElse(null));
+            return sameFile ? HttpTransport.getTotalSize(rangeHeaders) : -1;
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @return the position at which the stream should hand the rest of the file over to segments, or -1 if it should
+     * go on to the end, because the file does not accept ranges or what is left is too small to be worth splitting
+     */
+    private long getSwitchPosition(long writtenBytes) {
+        long totalSize = rangeableSize;
+        long switchPosition = (writtenBytes + DownloadJournal.BLOCK_SIZE - 1) / DownloadJournal.BLOCK_SIZE * DownloadJournal.BLOCK_SIZE; // the journal only records whole blocks
+        if (totalSize == -1 || totalSize - switchPosition <= downloadMetrics.getMultiThreadingThreshold(url.getHost())) {
+            return -1;
+        }
+        return switchPosition;
+    }
+
+    /**
+     * Downloads the rest of a streamed file in segments, once the stream has written the file up to {@code streamedBytes}.
+     */
+    private boolean continueInSegments(DownloadProgress progress, long streamedBytes) throws IOException {
+        long totalSize = rangeableSize;
+        if (!hasFreeSpace(totalSize - streamedBytes)) {
+            return false;
+        }
+        M.msgLogInfo("The server accepts ranges of " + file.getName() + " (" + totalSize + " bytes), downloading the rest of it in segments");
+        downloadMetrics.setTotalSize(totalSize);
+        downloadMetrics.setMultithreaded(true);
+        progress.setTotalSize(totalSize);
+        mirrors.verify(totalSize, downloadMetrics.getETag());
+        DownloadJournal journal = DownloadJournal.open(file, url, downloadMetrics.getETag(), downloadMetrics.getLastModified(), totalSize);
+        Segment streamed = new Segment(0, totalSize - 1);
+        streamed.advance(streamedBytes);
+        journal.markCompleted(streamed);
+        return downloadSegments(journal, progress);
+    }
+
+    /**
+     * Checks that the file system of the target file has room for the bytes still to be written, so that a large
+     * download fails right away instead of when the disk runs full near its end.
+     * @return false, after reporting it, if there is not enough space
+     */
+    private boolean hasFreeSpace(long bytesNeeded) {
+        if (bytesNeeded <= 0) {
+            return true;
+        }
+        try {
+            FileStore fileStore = Files.getFileStore(file.getAbsoluteFile().getParentFile().toPath());
+            long usableSpace = fileStore.getUsableSpace();
+            if (usableSpace < bytesNeeded) {
+                M.msgDownloadError(String.format(NOT_ENOUGH_SPACE_F, file.getName(), fileStore, UnitConverter.format(bytesNeeded, 2), UnitConverter.format(usableSpace, 2)));
+                return false;
+            }
+        } catch (IOException e) { // the download still fails if the disk does run full
+            M.msgLogWarning("Failed to check the free space for " + file.getName() + " : " + e.getMessage());
+        }
+        return true;
+    }
+
+    private void startDownloaderThreads(List<DownloaderThread> downloaderThreads, List<CompletableFuture<Void>> workers, SegmentedFileWriter fileWriter, WriteBehindQueue writeQueue, DownloadJournal journal, DownloadProgress progress, SegmentScheduler scheduler, ConnectionController connectionController) {
+        while (scheduler.hasWork() && connectionController.tryAddConnection()) {
+            DownloaderThread downloader = new DownloaderThread(mirrors, fileWriter, writeQueue, journal, checksum, progress, scheduler, connectionController);
+            if (firstResponse != null) { // the first thread gets the first segment, whose data the probe already requested
+                downloader.setFirstSegment(scheduler.next(), firstResponse);
+                firstResponse = null;
+            }
+            downloaderThreads.add(downloader);
+            workers.add(DownloadExecutor.transfer(downloader));
+        }
+    }
+
+    private void closeFirstResponse() {
+        if (firstResponse != null) {
+            try {
+                firstResponse.body().close();
+            } catch (IOException ignored) { // the response was not needed anymore
+            }
+            firstResponse = null;
+        }
+    }
+
+    /**
+     * Forgets the threads that are done, so that the lists only hold the running ones, however long the download takes.
+     * @return true if any of the threads that are done gave up on a segment, stopped with an unexpected error or
+     * found that the file changed on the server
+     */
+    private boolean removeFinishedThreads(List<DownloaderThread> downloaderThreads, List<CompletableFuture<Void>> workers) {
+        boolean failed = false;
+        for (int i = workers.size() - 1; i >= 0; i--) {
+            if (workers.get(i).isDone()) { // a thread that ended with an unexpected error never got to report it
+                failed |= workers.remove(i).isCompletedExceptionally();
+                DownloaderThread downloader = downloaderThreads.remove(i);
+                failed |= downloader.hasFailed();
+                fileChanged |= downloader.hasFileChanged();
+            }
+        }
+        return failed;
+    }
+}
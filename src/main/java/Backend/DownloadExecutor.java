@@ -0,0 +1,61 @@
+package Backend;
+
+import Utils.Utility;
+
+import java.util.Collection;
+import java.util.concurrent.*;
+
+/**
+ * This class runs the background work of Drifty on virtual threads, which cost next to nothing while they are blocked
+ * on the network, so that a download can have as many range requests in flight as it needs.
+ * Transfers (segment workers, file downloads) are limited to a fixed number running at the same time; the tasks that
+ * only coordinate other tasks (a batch, the processing of a link) are not counted, so that they can never hold back
+ * the transfers they are waiting for. Every task comes back as a future that completes as soon as the task ends.
+ */
+public final class DownloadExecutor {
+    private static final int MAX_CONCURRENT_TRANSFERS = 256;
+    private static final ExecutorService EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    private static final Semaphore TRANSFER_PERMITS = new Semaphore(MAX_CONCURRENT_TRANSFERS);
+
+    private DownloadExecutor() {
+    }
+
+    /**
+     * Runs a task that transfers data, waiting for a free slot if the maximum number of transfers are already running.
+     */
+    public static CompletableFuture<Void> transfer(Runnable task) {
+        return CompletableFuture.runAsync(() -> {
+            TRANSFER_PERMITS.acquireUninterruptibly();
+            try {
+                task.run();
+            } finally {
+                TRANSFER_PERMITS.release();
+            }
+        }, EXECUTOR);
+    }
+
+    /**
+     * Runs a task that mostly waits for other tasks.
+     */
+    public static CompletableFuture<Void> start(Runnable task) {
+        return CompletableFuture.runAsync(task, EXECUTOR);
+    }
+
+    /**
+     * Waits until all the given tasks are done, but at most {@code timeout} milliseconds. If they are all done
+     * already, it waits for the whole timeout, so that callers looping until more work shows up do not spin.
+     */
+    public static void awaitAll(Collection<CompletableFuture<Void>> tasks, long timeout) {
+        CompletableFuture<Void> allTasks = CompletableFuture.allOf(tasks.toArray(new CompletableFuture[0]));
+        if (allTasks.isDone()) {
+            Utility.sleep(timeout);
+            return;
+        }
+        try {
+            allTasks.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException | ExecutionException ignored) { // the tasks report their own failures
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
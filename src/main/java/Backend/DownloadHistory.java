@@ -0,0 +1,17 @@
+package Backend;
+
+import java.io.File;
+
+/**
+ * This interface is the history of completed downloads as seen by the {@link FileDownloader}. It looks up what is
+ * known about a file from its last download, so that the server is only asked for it again if it has changed, and
+ * records the validators of every download that completes.
+ */
+public interface DownloadHistory {
+    /**
+     * @return the validators of the last download of the link into the same file, or null if there was none
+     */
+    Validators getValidators(String link, File file);
+
+    void addDownload(String link, File file, Validators validators);
+}
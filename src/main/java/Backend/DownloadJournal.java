@@ -0,0 +1,204 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.apache.commons.io.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * This class keeps track of which parts of a multithreaded download are already on disk, so that a download that was
+ * interrupted (network failure, crash, closing Drifty) can continue where it stopped instead of starting over.
+ * The journal is stored in JSON format next to the file being downloaded, as "filename.drifty", and it is deleted once
+ * the download completes. Besides a bitmap of the completed blocks of the file, it stores the link, the size and the
+ * ETag / Last-Modified validators of the file. A journal is only resumed if the probe of the new attempt still finds
+ * the same validators, and every range of a journaled download is then requested with an If-Range header carrying
+ * them, so that the server sends the whole file instead of a range of it if the file changed in the meantime.
+ */
+public class DownloadJournal {
+    private static final MessageBroker M = Environment.getMessageBroker();
+    private static final String JOURNAL_EXTENSION = ".drifty";
+    static final int BLOCK_SIZE = 1024 * 1024; // 1 MB
+    private static final long FLUSH_INTERVAL = 2000; // 2 seconds
+    private final String link;
+    private final String eTag;
+    private final String lastModified;
+    private final long totalSize;
+    private long[] completedBlocks;
+    private transient File journalFile;
+    private transient BitSet completed;
+    private transient Map<Integer, Long> partialBlocks; // block -> bytes written into it so far, for the blocks not complete yet
+    private transient boolean changed;
+    private transient long lastFlush;
+
+    private DownloadJournal(File journalFile, String link, String eTag, String lastModified, long totalSize) {
+        this.journalFile = journalFile;
+        this.link = link;
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.totalSize = totalSize;
+        this.completed = new BitSet();
+        this.partialBlocks = new HashMap<>();
+    }
+
+    public static boolean exists(File target) {
+        return getJournalFile(target).exists();
+    }
+
+    /**
+     * Loads the journal of an earlier attempt to download the same file and checks that the file did not change since
+     * then, against the validators the probe of the download just received from the server. If there is no usable
+     * journal, a new, empty one is created.
+     */
+    public static DownloadJournal open(File target, URL url, String eTag, String lastModified, long totalSize) {
+        File journalFile = getJournalFile(target);
+        DownloadJournal journal = load(journalFile);
+        if (journal != null) {
+            if (journal.canResume(target, url, eTag, lastModified, totalSize)) {
+                M.msgDownloadInfo("Resuming download of \"" + target.getName() + "\" (" + journal.getCompletedBytes() * 100 / totalSize + "% already downloaded) ...");
+                return journal;
+            }
+            M.msgLogInfo("Discarding the outdated download journal of " + target.getName());
+        }
+        return new DownloadJournal(journalFile, url.toString(), eTag, lastModified, totalSize);
+    }
+
+    private static File getJournalFile(File target) {
+        return new File(target.getAbsolutePath() + JOURNAL_EXTENSION);
+    }
+
+    private static DownloadJournal load(File journalFile) {
+        if (!journalFile.exists()) {
+            return null;
+        }
+        try {
+            String json = FileUtils.readFileToString(journalFile, Charset.defaultCharset());
+            DownloadJournal journal = new Gson().fromJson(json, DownloadJournal.class);
+            if (journal == null || journal.link == null) {
+                return null;
+            }
+            journal.journalFile = journalFile;
+            journal.completed = journal.completedBlocks == null ? new BitSet() : BitSet.valueOf(journal.completedBlocks);
+            journal.partialBlocks = new HashMap<>();
+            return journal;
+        } catch (IOException | JsonParseException e) {
+            M.msgLogWarning("Failed to read download journal " + journalFile.getName() + " : " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * The same rules as for If-Range apply: a weak ETag does not prove that the bytes are the same, and without any
+     * validator there is no way to tell whether the file changed.
+     */
+    private boolean canResume(File target, URL url, String currentETag, String currentLastModified, long totalSize) {
+        if (!link.equals(url.toString()) || this.totalSize != totalSize || target.length() != totalSize) {
+            return false;
+        }
+        if (eTag != null) {
+            return !eTag.startsWith("W/") && eTag.equals(currentETag);
+        }
+        return lastModified != null && lastModified.equals(currentLastModified);
+    }
+
+    /**
+     * @return the ranges of the file that still need to be downloaded
+     */
+    public synchronized List<Segment> getMissingRanges() {
+        List<Segment> missingRanges = new ArrayList<>();
+        int blockCount = (int) ((totalSize + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        int block = completed.nextClearBit(0);
+        while (block < blockCount) {
+            int nextCompletedBlock = completed.nextSetBit(block);
+            int endBlock = (nextCompletedBlock == -1 || nextCompletedBlock > blockCount) ? blockCount : nextCompletedBlock;
+            missingRanges.add(new Segment((long) block * BLOCK_SIZE, Math.min((long) endBlock * BLOCK_SIZE, totalSize) - 1));
+            block = completed.nextClearBit(endBlock);
+        }
+        return missingRanges;
+    }
+
+    public synchronized long getCompletedBytes() {
+        long completedBytes = (long) completed.cardinality() * BLOCK_SIZE;
+        if (totalSize % BLOCK_SIZE != 0 && completed.get((int) (totalSize / BLOCK_SIZE))) {
+            completedBytes -= BLOCK_SIZE - totalSize % BLOCK_SIZE; // the last block is shorter than the others
+        }
+        return completedBytes;
+    }
+
+    /**
+     * @return the validator to send in the If-Range header of the ranges written into the file of this journal, or null if there is none
+     */
+    public String getIfRange() {
+        return HttpTransport.getIfRange(eTag, lastModified);
+    }
+
+    /**
+     * Records the bytes between the start of the segment and the byte it was written up to.
+     */
+    public synchronized void markCompleted(Segment segment) {
+        markCompleted(segment.getStart(), segment.getPosition());
+    }
+
+    /**
+     * Records that the bytes from {@code start} to {@code end} (exclusive) were written. A block is complete once all
+     * of its bytes were recorded, in one range or in several, which may arrive in any order, so every byte must be
+     * recorded only once.
+     */
+    public synchronized void markCompleted(long start, long end) {
+        end = Math.min(end, totalSize);
+        while (start < end) {
+            int block = (int) (start / BLOCK_SIZE);
+            long blockStart = (long) block * BLOCK_SIZE;
+            long blockEnd = Math.min(blockStart + BLOCK_SIZE, totalSize);
+            long bytes = Math.min(end, blockEnd) - start;
+            if (!completed.get(block) && partialBlocks.merge(block, bytes, Long::sum) >= blockEnd - blockStart) {
+                partialBlocks.remove(block);
+                completed.set(block);
+                changed = true;
+            }
+            start += bytes;
+        }
+    }
+
+    /**
+     * Writes the journal to disk if anything changed since it was last written more than a couple of seconds ago.
+     */
+    public synchronized void flushIfDue() {
+        if (changed && System.currentTimeMillis() - lastFlush >= FLUSH_INTERVAL) {
+            flush();
+        }
+    }
+
+    public synchronized void flush() {
+        completedBlocks = completed.toLongArray();
+        File tempFile = new File(journalFile.getAbsolutePath() + ".tmp");
+        try {
+            FileUtils.writeStringToFile(tempFile, new Gson().toJson(this), Charset.defaultCharset());
+            Files.move(tempFile.toPath(), journalFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            changed = false;
+            lastFlush = System.currentTimeMillis();
+        } catch (IOException e) {
+            M.msgLogWarning("Failed to save download journal " + journalFile.getName() + " : " + e.getMessage());
+        }
+    }
+
+    public synchronized void delete() {
+        try {
+            Files.deleteIfExists(journalFile.toPath());
+        } catch (IOException e) {
+            M.msgLogWarning("Failed to delete download journal " + journalFile.getName() + " : " + e.getMessage());
+        }
+    }
+}
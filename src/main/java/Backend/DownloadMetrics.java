@@ -1,26 +1,16 @@
 package Backend;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 public class DownloadMetrics {
-    private boolean active;
-    private float progressPercent;
+    private static final Map<String, Double> CONNECTION_SPEEDS = new ConcurrentHashMap<>(); // measured speed per connection for each host, in bytes per second
+    private static final double DEFAULT_CONNECTION_SPEED = 4 * 1024 * 1024; // 4 MB/s, used until a host has been measured
+    private static final int SECONDS_WORTH_SPLITTING = 4;
     private long totalSize;
     private boolean multithreaded;
-
-    public boolean isActive() {
-        return active;
-    }
-
-    public void setActive(boolean active) {
-        this.active = active;
-    }
-
-    public float getProgressPercent() {
-        return progressPercent;
-    }
-
-    public void setProgressPercent(float progressPercent) {
-        this.progressPercent = progressPercent;
-    }
+    private String eTag;
+    private String lastModified;
 
     public long getTotalSize() {
         return totalSize;
@@ -38,12 +28,44 @@ public class DownloadMetrics {
         this.multithreaded = multithreaded;
     }
 
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(String eTag) {
+        this.eTag = eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public void setLastModified(String lastModified) {
+        this.lastModified = lastModified;
+    }
+
     public int getThreadCount() {
-        return 6;
+        // number of connections a multithreaded download starts with, the ConnectionController adds more while downloading
+        return 2;
+    }
+
+    public int getMaxThreadCount() {
+        return 16;
+    }
+
+    /**
+     * A download is split across several connections only if a single connection would need more than a few seconds
+     * for it, based on the speed per connection that was measured for the host during earlier downloads.
+     * @return the file size in bytes above which a download from the given host is split
+     */
+    public long getMultiThreadingThreshold(String host) {
+        double speedPerConnection = CONNECTION_SPEEDS.getOrDefault(host, DEFAULT_CONNECTION_SPEED);
+        return (long) (speedPerConnection * SECONDS_WORTH_SPLITTING);
     }
 
-    public long getMultiThreadingThreshold() {
-        // 50 MB
-        return 52428800;
+    public static void recordConnectionSpeed(String host, double bytesPerSecond) {
+        if (bytesPerSecond > 0) {
+            CONNECTION_SPEEDS.merge(host, bytesPerSecond, (oldSpeed, newSpeed) -> oldSpeed * 0.7 + newSpeed * 0.3);
+        }
     }
 }
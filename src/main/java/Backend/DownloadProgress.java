@@ -0,0 +1,104 @@
+package Backend;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class holds the progress of one download. The workers add the bytes they write to a striped counter, so that
+ * they never wait on each other or on the front end, and the thread running the download takes a sample of the
+ * counter now and then. The samples go into a small ring buffer, from which the speed over the last few seconds is
+ * computed and smoothed into the speed and time left that are shown to the user. The memory used stays the same no
+ * matter how long the download takes.
+ */
+public class DownloadProgress {
+    private static final int SAMPLE_COUNT = 32; // about 3 seconds of samples when taken every 100 ms
+    private static final double SMOOTHING_FACTOR = 0.2; // weight of the newest speed measurement in the average
+    private final LongAdder transferredBytes = new LongAdder();
+    private volatile long totalSize;
+    private final long resumedBytes;
+    // ring buffer of (time, bytes) samples, only touched by the sampling thread
+    private final long[] sampleTimes = new long[SAMPLE_COUNT];
+    private final long[] sampleBytes = new long[SAMPLE_COUNT];
+    private int samples;
+    private int nextSample;
+    private volatile double speed;
+
+    /**
+     * @param totalSize the size of the file in bytes, or -1 if it is not known
+     * @param resumedBytes the bytes that were already downloaded before an interrupted download was resumed
+     */
+    public DownloadProgress(long totalSize, long resumedBytes) {
+        this.totalSize = totalSize;
+        this.resumedBytes = resumedBytes;
+    }
+
+    /**
+     * Counts bytes written by a worker. Safe to call from any number of threads at once.
+     */
+    public void add(long bytes) {
+        transferredBytes.add(bytes);
+    }
+
+    /**
+     * Records the current state of the counter and updates the speed. Only one thread may take samples.
+     */
+    public void sample() {
+        long now = System.nanoTime();
+        long bytes = transferredBytes.sum();
+        if (samples > 0) {
+            int oldest = samples < SAMPLE_COUNT ? 0 : nextSample;
+            long elapsed = now - sampleTimes[oldest];
+            if (elapsed > 0) {
+                double windowSpeed = (bytes - sampleBytes[oldest]) * 1e9 / elapsed;
+                speed = samples == 1 ? windowSpeed : SMOOTHING_FACTOR * windowSpeed + (1 - SMOOTHING_FACTOR) * speed;
+            }
+        }
+        sampleTimes[nextSample] = now;
+        sampleBytes[nextSample] = bytes;
+        nextSample = (nextSample + 1) % SAMPLE_COUNT;
+        samples = Math.min(samples + 1, SAMPLE_COUNT);
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Sets the size of a file whose download started without it being known.
+     */
+    public void setTotalSize(long totalSize) {
+        this.totalSize = totalSize;
+    }
+
+    /**
+     * @return the bytes of the file that are downloaded so far, including the resumed ones
+     */
+    public long getDownloadedBytes() {
+        return resumedBytes + transferredBytes.sum();
+    }
+
+    /**
+     * @return the bytes received in this session, without the resumed ones
+     */
+    public long getTransferredBytes() {
+        return transferredBytes.sum();
+    }
+
+    /**
+     * @return the smoothed download speed in bytes per second
+     */
+    public double getSpeed() {
+        return speed;
+    }
+
+    /**
+     * @return the estimated number of seconds until the download is complete, or -1 if it cannot be estimated
+     */
+    public long getSecondsLeft() {
+        double currentSpeed = speed;
+        long size = totalSize;
+        if (size <= 0 || currentSpeed < 1) {
+            return -1;
+        }
+        return (long) Math.ceil(Math.max(0, size - getDownloadedBytes()) / currentSpeed);
+    }
+}
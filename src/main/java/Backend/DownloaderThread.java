@@ -1,34 +1,172 @@
 package Backend;
-import java.io.FileOutputStream;
+import Utils.Environment;
+import Utils.MessageBroker;
+import Utils.Utility;
+
 import java.io.IOException;
-import java.net.URL;
-import java.net.URLConnection;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-public class DownloaderThread extends Thread {
-    private final URL url;
-    private final long start;
-    private final long end;
-    private final FileOutputStream file;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.net.http.HttpTimeoutException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+public class DownloaderThread implements Runnable {
+    private static final MessageBroker M = Environment.getMessageBroker();
+    private final MirrorSet mirrors;
+    private final SegmentScheduler scheduler;
+    private final ConnectionController connectionController;
+    private final SegmentedFileWriter file;
+    private final WriteBehindQueue writeQueue; // null if the connection writes through a memory-mapped window itself
+    private final DownloadJournal journal;
+    private final StreamingChecksum checksum;
+    private final DownloadProgress progress;
+    private volatile boolean failed;
+    private volatile boolean fileChanged;
+    private Segment firstSegment;
+    private HttpResponse<InputStream> firstResponse; // an open response whose body starts at the first byte of the first segment
 
-    public DownloaderThread(URL url, FileOutputStream file, long start, long end) {
-        this.url = url;
+    public DownloaderThread(MirrorSet mirrors, SegmentedFileWriter file, WriteBehindQueue writeQueue, DownloadJournal journal, StreamingChecksum checksum, DownloadProgress progress, SegmentScheduler scheduler, ConnectionController connectionController) {
+        this.mirrors = mirrors;
         this.file = file;
-        this.start = start;
-        this.end = end;
+        this.writeQueue = writeQueue;
+        this.journal = journal;
+        this.checksum = checksum;
+        this.progress = progress;
+        this.scheduler = scheduler;
+        this.connectionController = connectionController;
+    }
+
+    /**
+     * Makes the thread start with the given segment, reading it from a response that was already received instead
+     * of sending a new request.
+     */
+    void setFirstSegment(Segment segment, HttpResponse<InputStream> response) {
+        this.firstSegment = segment;
+        this.firstResponse = response;
+    }
+
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    /**
+     * @return true if the server sent another version of the file than the one the ranges on disk belong to
+     */
+    public boolean hasFileChanged() {
+        return fileChanged;
     }
 
     @Override
     public void run() {
-        ReadableByteChannel readableByteChannel;
+        // the connection stays with one mirror, and stops if that mirror is dropped; the answer to the probe came from the primary link
+        Mirror mirror = firstResponse != null ? mirrors.acquirePrimary() : mirrors.acquire();
+        FileWindow window = writeQueue == null ? file.openWindow() : null;
+        boolean retired = false;
         try {
-            URLConnection con = url.openConnection();
-            con.setRequestProperty("Range", "bytes=" + start + "-" + end); // stating how many bytes of data to be sent by the server.
-            con.connect();
-            readableByteChannel = Channels.newChannel(con.getInputStream());
-            file.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
+            Segment segment = firstSegment != null ? firstSegment : scheduler.next();
+            while (segment != null) {
+                try {
+                    if (!downloadSegment(segment, window, mirror)) {
+                        break;
+                    }
+                    mirrors.succeeded(mirror);
+                } catch (HttpTransport.FileChangedException e) {
+                    if (!mirrors.changed(mirror)) { // the other mirrors take over the segment if there are any
+                        M.msgLogWarning(e.getMessage());
+                        fileChanged = true;
+                        failed = true;
+                    }
+                    break;
+                } catch (IOException e) {
+                    if (mirrors.failed(mirror, e)) { // the other mirrors take over the segment, without counting this attempt against it
+                        break;
+                    }
+                    // the segment goes back to the scheduler once the wait is over, and the next attempt continues from the last byte written
+                    long delay = RetryPolicy.getDelay(segment.recordFailure());
+                    if (delay == -1) {
+                        M.msgLogError("Giving up on bytes " + segment.getPosition() + "-" + segment.getEnd() + " of " + mirror.getUrl() + " after " + RetryPolicy.MAX_ATTEMPTS + " failed attempts : " + e.getMessage());
+                        failed = true;
+                        break;
+                    }
+                    if (e instanceof SocketTimeoutException || e instanceof HttpTimeoutException) { // the connection may be dead, so a fresh one takes over the range right away
+                        M.msgLogWarning("Connection to " + mirror.getUrl() + " stalled, handing bytes " + segment.getPosition() + "-" + segment.getEnd() + " to a new connection : " + e.getMessage());
+                        break;
+                    }
+                    M.msgLogWarning("Failed to download bytes " + segment.getPosition() + "-" + segment.getEnd() + " of " + mirror.getUrl() + ", retrying in " + delay + " ms : " + e.getMessage());
+                    Utility.sleep(delay);
+                } finally {
+                    scheduler.finished(segment);
+                }
+                if (writeQueue != null && writeQueue.hasFailed()) { // the file cannot be written, so there is no point in downloading more
+                    failed = true;
+                    break;
+                }
+                if (connectionController.retireIfAboveTarget()) {
+                    retired = true;
+                    break;
+                }
+                segment = mirror.isDropped() ? null : scheduler.next();
+            }
+        } catch (RuntimeException e) {
+            M.msgLogError("Connection to " + mirror.getUrl() + " stopped unexpectedly : " + e);
+            failed = true;
+        } finally {
+            if (window != null) {
+                window.close();
+            }
+            mirrors.release(mirror);
+            if (!retired) { // retiring already gave up the slot
+                connectionController.connectionClosed();
+            }
+        }
+    }
+
+    /**
+     * @return false if the server asked to slow down, in which case this connection should stop
+     */
+    private boolean downloadSegment(Segment segment, FileWindow window, Mirror mirror) throws IOException {
+        BandwidthLimit bandwidthLimit = mirror.getBandwidthLimit();
+        HttpResponse<InputStream> response = firstResponse;
+        firstResponse = null; // if reading it fails, the next attempt sends a request of its own
+        long streamPosition = segment.getPosition(); // the position in the file of the next byte of the response
+        if (response == null) {
+            response = mirror.getTransport().getRange(mirror.getUrl(), streamPosition, segment.getEnd(), mirror.getIfRange());
+        }
+        if (ConnectionController.isThrottlingResponse(response.statusCode())) {
+            connectionController.onThrottled(ConnectionController.getRetryAfter(response.headers()));
+            return false;
+        }
+        segment.attach(response.body());
+        try (StreamReader reader = new StreamReader(response.body())) {
+            ByteBuffer data;
+            // the end of the segment can move while downloading if another thread steals part of it,
+            // and in the endgame another thread may be downloading the same range, so only the bytes that the segment
+            // hands out are written, and the response is read until the segment is complete
+            while (segment.hasRemaining() && streamPosition <= segment.getEnd() && (data = reader.read(Math.min(segment.getEnd() - streamPosition + 1, bandwidthLimit.getStepSize()))) != null) {
+                int bytesRead = data.remaining();
+                long position = segment.take(data, streamPosition);
+                int bytesTaken = data.remaining();
+                streamPosition += bytesRead;
+                if (bytesTaken > 0) {
+                    if (writeQueue != null) { // the queue takes over the reader's buffer, which holds the data, and records the range in the checksum and the journal once it is written
+                        writeQueue.write(reader.detachBuffer(), position);
+                    } else {
+                        window.write(data, position);
+                        checksum.written(position, bytesTaken);
+                        journal.markCompleted(position, position + bytesTaken);
+                    }
+                    progress.add(bytesTaken);
+                }
+                mirror.add(bytesRead);
+                bandwidthLimit.acquire(bytesRead);
+            }
         } catch (IOException e) {
-            throw new RuntimeException(e);
+            if (segment.hasRemaining()) {
+                throw e;
+            }
+            // another thread completed the range first and cancelled this read
+        } finally {
+            segment.detach(response.body());
         }
+        return true;
     }
 }
@@ -3,12 +3,9 @@ package Backend;
 import Enums.Program;
 import Utils.Environment;
 import Utils.MessageBroker;
-import Utils.Utility;
 
 import java.io.*;
 import java.net.*;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
@@ -22,22 +19,44 @@ import static Utils.Utility.*;
  */
 public class FileDownloader implements Runnable {
     private final MessageBroker M = Environment.getMessageBroker();
-    private final DownloadMetrics downloadMetrics;
-    private final int numberOfThreads;
-    private final long threadMaxDataSize;
+    private final ConnectionPool connectionPool;
+    private final DownloadHistory history;
     private final String dir;
     private String fileName;
     private String link;
     private URL url;
+    private HttpTransport transport;
+    private long rateLimit = RateLimiter.UNLIMITED;
+    private BandwidthLimit bandwidthLimit;
+    private final List<String> mirrors = new ArrayList<>();
 
-    public FileDownloader(String link, String fileName, String dir) {
+    /**
+     * @param history where the validators of the last download of the link are looked up and those of this download
+     * recorded, or null to always download the file
+     */
+    public FileDownloader(String link, String fileName, String dir, ConnectionPool connectionPool, DownloadHistory history) {
         this.link = link;
         this.fileName = fileName;
         this.dir = dir;
-        this.downloadMetrics = new DownloadMetrics();
-        this.numberOfThreads = downloadMetrics.getThreadCount();
-        this.threadMaxDataSize = downloadMetrics.getMultiThreadingThreshold();
-        downloadMetrics.setMultithreaded(false);
+        this.connectionPool = connectionPool;
+        this.history = history;
+    }
+
+    /**
+     * Limits the bandwidth of this download alone, on top of the global and per-host limits.
+     */
+    public void setRateLimit(long bytesPerSecond) {
+        this.rateLimit = bytesPerSecond;
+        if (bandwidthLimit != null) {
+            bandwidthLimit.getJobLimiter().setRate(bytesPerSecond);
+        }
+    }
+
+    /**
+     * Adds another link to the same file, which the download is spread over if it serves the same file.
+     */
+    public void addMirror(String mirror) {
+        mirrors.add(mirror);
     }
 
     public String getDir() {
@@ -50,52 +69,30 @@ public class FileDownloader implements Runnable {
 
     private void downloadFile() {
         try {
-            ReadableByteChannel readableByteChannel;
+            File file = new File(getDir() + fileName);
+            ProgressBar progressBar = new ProgressBar(fileName, getDir());
+            DownloadEngine engine = new DownloadEngine(transport, url, file, bandwidthLimit, progressBar);
+            for (String mirror : mirrors) {
+                try {
+                    URL mirrorUrl = new URI(mirror).toURL();
+                    engine.addMirror(connectionPool.get(mirrorUrl), mirrorUrl);
+                } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+                    M.msgLinkError("Invalid mirror link " + mirror + " !");
+                }
+            }
+            if (history != null) {
+                engine.setPreviousValidators(history.getValidators(link, file));
+            }
+            engine.probe();
+            if (engine.isNotModified()) {
+                M.msgDownloadInfo(String.format(NOT_MODIFIED_F, fileName));
+                return;
+            }
+            M.msgDownloadInfo(String.format(DOWNLOADING_F, fileName));
             try {
-                boolean supportsMultithreading = downloadMetrics.isMultithreaded();
-                long totalSize = downloadMetrics.getTotalSize();
-                if (supportsMultithreading) {
-                    List<FileOutputStream> fileOutputStreams = new ArrayList<>(numberOfThreads);
-                    List<Long> partSizes = new ArrayList<>(numberOfThreads);
-                    List<File> tempFiles = new ArrayList<>(numberOfThreads);
-                    List<DownloaderThread> downloaderThreads = new ArrayList<>(numberOfThreads);
-                    long partSize = Math.floorDiv(totalSize, numberOfThreads);
-                    long start, end;
-                    FileOutputStream fileOut;
-                    File file;
-                    for (int i = 0; i < numberOfThreads; i++) {
-                        file = File.createTempFile(fileName.hashCode() + String.valueOf(i), ".tmp");
-                        file.deleteOnExit(); // Deletes temporary file when JVM exits
-                        fileOut = new FileOutputStream(file);
-                        start = (i == 0) ? 0 : ((i * partSize) + 1); // The start of the range of bytes to be downloaded by the thread
-                        end = ((numberOfThreads - 1) == i) ? totalSize : ((i * partSize) + partSize); // The end of the range of bytes to be downloaded by the thread
-                        DownloaderThread downloader = new DownloaderThread(url, fileOut, start, end);
-                        downloader.start();
-                        fileOutputStreams.add(fileOut);
-                        partSizes.add(end - start);
-                        downloaderThreads.add(downloader);
-                        tempFiles.add(file);
-                    }
-                    ProgressBarThread progressBarThread = new ProgressBarThread(fileOutputStreams, partSizes, fileName, getDir(), totalSize, downloadMetrics);
-                    progressBarThread.start();
-                    M.msgDownloadInfo(String.format(DOWNLOADING_F, fileName));
-                    // check if all the files are downloaded
-                    while (!mergeDownloadedFileParts(fileOutputStreams, partSizes, downloaderThreads, tempFiles)) {
-                        sleep(500);
-                    }
-                    // keep the main thread from closing the IO for a short amount of time so UI thread can finish and output
-                } else {
-                    InputStream urlStream = url.openStream();
-                    readableByteChannel = Channels.newChannel(urlStream);
-                    FileOutputStream fos = new FileOutputStream(getDir() + fileName);
-                    ProgressBarThread progressBarThread = new ProgressBarThread(fos, totalSize, fileName, getDir(), downloadMetrics);
-                    progressBarThread.start();
-                    M.msgDownloadInfo(String.format(DOWNLOADING_F, fileName));
-                    fos.getChannel().transferFrom(readableByteChannel, 0, Long.MAX_VALUE);
-                    // keep the main thread from closing the IO for a short amount of time so UI thread can finish and give output
+                if (engine.download() && history != null) {
+                    history.addDownload(link, file, engine.getValidators());
                 }
-                downloadMetrics.setActive(false);
-                Utility.sleep(1800);
             } catch (SecurityException e) {
                 M.msgDownloadError("Write access to \"" + dir + fileName + "\" denied !");
             } catch (FileNotFoundException fileNotFoundException) {
@@ -103,6 +100,8 @@ public class FileDownloader implements Runnable {
             } catch (IOException e) {
                 M.msgDownloadError(FAILED_TO_DOWNLOAD_CONTENTS + e.getMessage());
             }
+        } catch (IOException e) {
+            M.msgDownloadError(String.format(FAILED_CONNECTION_F, url));
         } catch (NullPointerException e) {
             M.msgDownloadError(FAILED_TO_READ_DATA_STREAM);
         }
@@ -117,7 +116,7 @@ public class FileDownloader implements Runnable {
             fileDownloadMessage = outputFileName;
         }
         M.msgDownloadInfo("Trying to download \"" + fileDownloadMessage + "\" ...");
-        ProcessBuilder processBuilder = new ProcessBuilder(Program.get(YT_DLP), "--quiet", "--progress", "-P", dir, link, "-o", outputFileName);
+        ProcessBuilder processBuilder = new ProcessBuilder(getYtDlpCommand(outputFileName));
         processBuilder.inheritIO();
         M.msgDownloadInfo(String.format(DOWNLOADING_F, fileDownloadMessage));
         int exitValueOfYt_Dlp = -1;
@@ -137,39 +136,11 @@ public class FileDownloader implements Runnable {
         }
     }
 
-    public boolean mergeDownloadedFileParts(List<FileOutputStream> fileOutputStreams, List<Long> partSizes, List<DownloaderThread> downloaderThreads, List<File> tempFiles) throws IOException {
-        // check if all files are downloaded
-        int completed = 0;
-        FileOutputStream fileOutputStream;
-        DownloaderThread downloaderThread;
-        long partSize;
-        for (int i = 0; i < numberOfThreads; i++) {
-            fileOutputStream = fileOutputStreams.get(i);
-            partSize = partSizes.get(i);
-            downloaderThread = downloaderThreads.get(i);
-            if (fileOutputStream.getChannel().size() < partSize) {
-                if (!downloaderThread.isAlive()) {
-                    M.msgDownloadError("Error encountered while downloading the file! Please try again.");
-                }
-            } else if (!downloaderThread.isAlive()) {
-                completed++;
-            }
-        }
-        // check if it is merged-able
-        if (completed == numberOfThreads) {
-            fileOutputStream = new FileOutputStream(getDir() + fileName);
-            long position = 0;
-            for (int i = 0; i < numberOfThreads; i++) {
-                File f = tempFiles.get(i);
-                FileInputStream fs = new FileInputStream(f);
-                ReadableByteChannel rbs = Channels.newChannel(fs);
-                fileOutputStream.getChannel().transferFrom(rbs, position, f.length());
-                position += f.length();
-            }
-            fileOutputStream.close();
-            return true;
-        }
-        return false;
+    private List<String> getYtDlpCommand(String outputFileName) {
+        // The command line arguments tell `yt-dlp` to download the video and to save it to the specified directory.
+        List<String> command = new ArrayList<>(List.of(Program.get(YT_DLP), "--quiet", "--progress", "-P", dir, link, "-o", outputFileName));
+        command.addAll(bandwidthLimit.getYtDlpArguments());
+        return command;
     }
 
     @Override
@@ -183,6 +154,7 @@ public class FileDownloader implements Runnable {
                 link = link + "?raw=true";
             }
         }
+        bandwidthLimit = BandwidthLimit.forLink(link, rateLimit);
         boolean isYouTubeLink = isYoutube(link);
         boolean isInstagramLink = isInstagram(link);
         try {
@@ -216,12 +188,7 @@ public class FileDownloader implements Runnable {
                 }
             } else {
                 url = new URI(link).toURL();
-                URLConnection openConnection = url.openConnection();
-                openConnection.connect();
-                long totalSize = openConnection.getHeaderFieldLong("Content-Length", -1);
-                downloadMetrics.setTotalSize(totalSize);
-                String acceptRange = openConnection.getHeaderField("Accept-Ranges");
-                downloadMetrics.setMultithreaded((totalSize > threadMaxDataSize) && (acceptRange != null) && (acceptRange.equalsIgnoreCase("bytes")));
+                transport = connectionPool.get(url); // all the requests for this file share the connection(s) kept open for its host
                 if (fileName.isEmpty()) {
                     String[] webPaths = url.getFile().trim().split("/");
                     fileName = webPaths[webPaths.length - 1];
@@ -231,8 +198,6 @@ public class FileDownloader implements Runnable {
             }
         } catch (MalformedURLException | URISyntaxException e) {
             M.msgLinkError(INVALID_LINK);
-        } catch (IOException e) {
-            M.msgDownloadError(String.format(FAILED_CONNECTION_F, url));
         }
     }
 
@@ -245,7 +210,7 @@ public class FileDownloader implements Runnable {
             fileDownloadMessage = outputFileName;
         }
         M.msgDownloadInfo("Trying to download \"" + fileDownloadMessage + "\" ...");
-        ProcessBuilder processBuilder = new ProcessBuilder(Program.get(YT_DLP), "--quiet", "--progress", "-P", dir, link, "-o", outputFileName); // The command line arguments tell `yt-dlp` to download the video and to save it to the specified directory.
+        ProcessBuilder processBuilder = new ProcessBuilder(getYtDlpCommand(outputFileName));
         processBuilder.inheritIO();
         M.msgDownloadInfo(String.format(DOWNLOADING_F, fileDownloadMessage));
         Process yt_dlp = processBuilder.start(); // Starts the download process
@@ -0,0 +1,81 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class is the view of the download target that one worker writes its segments through.
+ * In memory-mapped mode, it maps a window of the file around the position being written and moves the window along
+ * with the worker, so that the memory mapped at any time stays bounded no matter how large the file is. If the file
+ * cannot be mapped, the window falls back to writing through the shared channel of the {@link SegmentedFileWriter}.
+ */
+public class FileWindow {
+    private static final MessageBroker M = Environment.getMessageBroker();
+    private static final long WINDOW_SIZE = 64 * 1024 * 1024; // 64 MB
+    private final SegmentedFileWriter file;
+    private FileChannel fileChannel;
+    private MappedByteBuffer window;
+    private long windowStart;
+
+    FileWindow(SegmentedFileWriter file, FileChannel fileChannel) {
+        this.file = file;
+        this.fileChannel = fileChannel;
+    }
+
+    /**
+     * Writes all the remaining bytes of the buffer into the file starting at {@code position}.
+     * @return the number of bytes written
+     */
+    public int write(ByteBuffer source, long position) throws IOException {
+        int written = 0;
+        while (source.hasRemaining()) {
+            ByteBuffer target = map(position + written, source.remaining());
+            if (target == null) {
+                return written + file.write(source, position + written);
+            }
+            int bytes = target.remaining();
+            target.put(source.slice(source.position(), bytes));
+            source.position(source.position() + bytes);
+            written += bytes;
+        }
+        return written;
+    }
+
+    /**
+     * Drops the mapped window, which is unmapped once it is garbage collected. The window must not be written to afterwards.
+     */
+    public void close() {
+        window = null;
+        fileChannel = null;
+    }
+
+    /**
+     * @return the part of the mapped window from {@code position} on, at most {@code count} bytes long,
+     * or null if the file is written through the channel
+     */
+    private ByteBuffer map(long position, long count) throws IOException {
+        if (fileChannel == null) {
+            return null;
+        }
+        if (window == null || position < windowStart || position >= windowStart + window.capacity()) {
+            long size = Math.min(WINDOW_SIZE, file.getTotalSize() - position);
+            try {
+                window = fileChannel.map(FileChannel.MapMode.READ_WRITE, position, size);
+                windowStart = position;
+            } catch (IOException | UnsupportedOperationException e) {
+                M.msgLogWarning("Failed to memory-map the download target, writing it directly instead : " + e.getMessage());
+                fileChannel = null;
+                window = null;
+                return null;
+            }
+        }
+        int offset = (int) (position - windowStart);
+        int length = (int) Math.min(count, window.capacity() - offset);
+        return window.slice(offset, length);
+    }
+}
@@ -0,0 +1,63 @@
+package Backend;
+
+import java.util.Locale;
+
+/**
+ * This class tells when the data of a download is forced out of the cache of the operating system onto the disk:
+ * never, which leaves it to the operating system, once at the end of the download, or every time a given amount of
+ * data was written. Forcing the data costs throughput, but makes sure that a finished download, or the part of it
+ * recorded in the resume journal, survives a crash or a power loss.
+ */
+public final class FsyncPolicy {
+    public static final String NEVER = "never";
+    public static final String AT_END = "end";
+    private final long interval; // bytes written between two syncs, 0 to sync at the end only, -1 to never sync
+
+    private FsyncPolicy(long interval) {
+        this.interval = interval;
+    }
+
+    /**
+     * Parses a policy as stored in the preferences: {@code never}, {@code end}, or an amount of data such as
+     * {@code 64M} after which the data written so far is synced, in the form accepted by {@link RateLimiter#parseRate(String)}.
+     * @throws NumberFormatException if the policy is none of these
+     */
+    public static FsyncPolicy parse(String policy) {
+        String value = policy.trim().toLowerCase(Locale.ROOT);
+        if (value.equals(NEVER)) {
+            return new FsyncPolicy(-1);
+        }
+        if (value.equals(AT_END)) {
+            return new FsyncPolicy(0);
+        }
+        long interval = RateLimiter.parseRate(value);
+        if (interval <= 0) {
+            throw new NumberFormatException("Invalid sync policy : " + policy);
+        }
+        return new FsyncPolicy(interval);
+    }
+
+    public boolean syncsAtEnd() {
+        return interval >= 0;
+    }
+
+    /**
+     * @return true if the data written since the last sync should be synced now
+     */
+    public boolean isDue(long unsyncedBytes) {
+        return interval > 0 && unsyncedBytes >= interval;
+    }
+
+    /**
+     * @return the policy in the form accepted by {@link #parse(String)}
+     */
+    @Override
+    public String toString() {
+        if (interval == -1) {
+            return NEVER;
+        } else if (interval == 0) {
+            return AT_END;
+        }
+        return RateLimiter.formatRate(interval);
+    }
+}
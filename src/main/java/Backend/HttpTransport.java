@@ -0,0 +1,253 @@
+package Backend;
+
+import Preferences.AppSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+
+/**
+ * This class sends the requests of the downloads from one host through one shared HttpClient. With servers that
+ * support HTTP/2, all the ranges of a file are multiplexed as separate streams over a single connection, so that
+ * hosts limiting the number of connections per client still serve every range at full speed. With servers that only
+ * speak HTTP/1.1, the client falls back to a pool of keep-alive connections that are reused from one request to the
+ * next instead of paying for a new TCP and TLS handshake every time.
+ */
+public class HttpTransport implements AutoCloseable {
+    public static final long DEFAULT_CONNECT_TIMEOUT = 30; // seconds
+    public static final long DEFAULT_READ_TIMEOUT = 60; // seconds
+    private final HttpClient.Builder clientBuilder;
+    private final Duration readTimeout;
+    private HttpClient client;
+    private volatile long lastUsed = System.currentTimeMillis();
+
+    public HttpTransport() {
+        this(AppSettings.get.connectTimeout(), AppSettings.get.readTimeout());
+    }
+
+    /**
+     * @param connectTimeout the number of seconds to wait for a connection to the host
+     * @param readTimeout the number of seconds to wait for the answer to a request, and then for every read of its body,
+     * after which the body is aborted by the {@link StallWatchdog}
+     */
+    public HttpTransport(long connectTimeout, long readTimeout) {
+        this.clientBuilder = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofSeconds(connectTimeout));
+        this.readTimeout = Duration.ofSeconds(readTimeout);
+    }
+
+    /**
+     * Parses timeouts given as {@code CONNECT[,READ]} in seconds, such as {@code 30,60}, and stores them for the
+     * transports created from now on. The read timeout is left as it is if only the connect timeout is given.
+     * @throws NumberFormatException if a timeout is not a positive number of seconds
+     */
+    public static void applyTimeouts(String timeouts) {
+        String[] values = timeouts.split(",");
+        if (values.length > 2) {
+            throw new NumberFormatException("Expected CONNECT[,READ] in seconds : " + timeouts);
+        }
+        long connectTimeout = parseTimeout(values[0]);
+        long readTimeout = values.length == 2 ? parseTimeout(values[1]) : AppSettings.get.readTimeout();
+        AppSettings.set.connectTimeout(connectTimeout);
+        AppSettings.set.readTimeout(readTimeout);
+    }
+
+    private static long parseTimeout(String value) {
+        long seconds = Long.parseLong(value.trim());
+        if (seconds <= 0) {
+            throw new NumberFormatException("A timeout must be at least one second : " + value.trim());
+        }
+        return seconds;
+    }
+
+    /**
+     * @return the time of the last request sent through this transport, used by {@link ConnectionPool} to drop idle transports
+     */
+    long getLastUsed() {
+        return lastUsed;
+    }
+
+    /**
+     * Closes the connections kept open to the host and stops the threads of the client. The requests already sent are
+     * answered and their bodies can still be read, and a request sent afterwards opens a new client, so that a
+     * download still holding this transport when the {@link ConnectionPool} drops it is not cut off.
+     */
+    @Override
+    public synchronized void close() {
+        if (client != null) {
+            client.shutdown();
+            client = null;
+        }
+    }
+
+    private synchronized HttpClient getClient() {
+        if (client == null) {
+            client = clientBuilder.build();
+        }
+        return client;
+    }
+
+    /**
+     * Asks the server for the headers of the file (size, range support, validators) without downloading it.
+     */
+    public HttpHeaders probe(URL url) throws IOException {
+        HttpResponse<Void> response = send(newRequest(url).method("HEAD", HttpRequest.BodyPublishers.noBody()).build(), HttpResponse.BodyHandlers.discarding());
+        int responseCode = response.statusCode();
+        if (responseCode == HttpURLConnection.HTTP_BAD_METHOD || responseCode == HttpURLConnection.HTTP_NOT_IMPLEMENTED) {
+            // some servers do not answer HEAD requests, in which case the headers of a normal request are used
+            HttpResponse<InputStream> fallback = get(url);
+            fallback.body().close();
+            return fallback.headers();
+        }
+        return response.headers();
+    }
+
+    /**
+     * Requests the whole file with an open range starting at the first byte. Servers that accept ranges answer with
+     * 206 and state the size of the file in the Content-Range header, the others with 200, and either way the body is
+     * the whole file, so the answer can decide how the file is downloaded and its data used as the start of it.
+     * @param validators the validators of the copy of the file that is already on disk, or null to always get the file
+     * @param acceptEncoding the content encodings the body may be compressed with, or null to get the file as it is; a
+     * compressed answer can only be downloaded as a single stream
+     * @return the response of the server, whose body the caller has to read or close, or a 304 response if the file
+     * has not changed since the validators were sent
+     */
+    public HttpResponse<InputStream> getFromStart(URL url, Validators validators, String acceptEncoding) throws IOException {
+        HttpRequest.Builder builder = newRequest(url).header("Range", "bytes=0-");
+        if (acceptEncoding != null) {
+            builder.header("Accept-Encoding", acceptEncoding);
+        }
+        if (validators != null && validators.getETag() != null) {
+            builder.header("If-None-Match", validators.getETag());
+        }
+        if (validators != null && validators.getLastModified() != null) {
+            builder.header("If-Modified-Since", validators.getLastModified());
+        }
+        HttpResponse<InputStream> response = send(builder.GET().build(), watchedBody());
+        if (response.statusCode() == 416) { // an empty file has no first byte to start from
+            response.body().close();
+            return get(url);
+        }
+        return response;
+    }
+
+    /**
+     * @return the size of the whole file stated in the Content-Range header of a 206 response, or -1 if it is not known
+     */
+    public static long getTotalSize(HttpHeaders headers) {
+        String contentRange = headers.firstValue("Content-Range").orElse("");
+        int slash = contentRange.lastIndexOf('/');
+        if (slash != -1) {
+            try {
+                return Long.parseLong(contentRange.substring(slash + 1).trim());
+            } catch (NumberFormatException ignored) { // "*" when the server does not know the size
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Requests the whole file.
+     */
+    public HttpResponse<InputStream> get(URL url) throws IOException {
+        return send(newRequest(url).GET().build(), watchedBody());
+    }
+
+    /**
+     * Requests the bytes from {@code start} to {@code end} (inclusive) of the file.
+     * @return the response of the server, which is either the requested range or a throttling response
+     * (see {@link ConnectionController#isThrottlingResponse(int)}) whose body is already closed
+     * @throws IOException if the request fails or the server does not send the requested range
+     */
+    public HttpResponse<InputStream> getRange(URL url, long start, long end) throws IOException {
+        return getRange(url, start, end, null);
+    }
+
+    /**
+     * Requests the bytes from {@code start} to {@code end} (inclusive) of the file, but only if the file is still the
+     * one the validator was sent for, so that a range of a newer version is never written next to the older ones.
+     * @param ifRange the strong ETag or the Last-Modified date of the file (see {@link #getIfRange(String, String)}),
+     * or null to accept any version of the file
+     * @throws FileChangedException if the server sends a different version of the file
+     * @see #getRange(URL, long, long)
+     */
+    public HttpResponse<InputStream> getRange(URL url, long start, long end, String ifRange) throws IOException {
+        HttpRequest.Builder builder = newRequest(url)
+                .header("Range", "bytes=" + start + "-" + end); // stating how many bytes of data to be sent by the server.
+        if (ifRange != null) {
+            builder.header("If-Range", ifRange);
+        }
+        HttpResponse<InputStream> response = send(builder.GET().build(), watchedBody());
+        int responseCode = response.statusCode();
+        // the server answers If-Range with the whole file if it changed, and a server that ignores If-Range still sends the current ETag
+        String eTag = response.headers().firstValue("ETag").orElse(null);
+        if (ifRange != null && (responseCode == HttpURLConnection.HTTP_OK || responseCode == HttpURLConnection.HTTP_PARTIAL && ifRange.startsWith("\"") && eTag != null && !eTag.equals(ifRange))) {
+            response.body().close();
+            throw new FileChangedException("The file at " + url + " changed on the server during the download");
+        }
+        if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+            response.body().close();
+            if (!ConnectionController.isThrottlingResponse(responseCode)) { // anything else than the range would end up in the wrong place of the file
+                throw new IOException("Server did not send the requested range of " + url + " (HTTP " + responseCode + ")");
+            }
+        }
+        return response;
+    }
+
+    /**
+     * @return the validator to send in the If-Range header for the file with the given validators, which has to be a
+     * strong ETag (a weak one does not prove that the bytes are the same) or else the Last-Modified date, or null if
+     * the file has neither
+     */
+    public static String getIfRange(String eTag, String lastModified) {
+        if (eTag != null && !eTag.startsWith("W/")) {
+            return eTag;
+        }
+        return lastModified;
+    }
+
+    /**
+     * Thrown when a range of a file is requested with If-Range, and the file is not the same anymore.
+     */
+    public static class FileChangedException extends IOException {
+        public FileChangedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * @return a body handler that hands the body over as a stream watched by the {@link StallWatchdog}
+     */
+    private HttpResponse.BodyHandler<InputStream> watchedBody() {
+        long timeout = readTimeout.toMillis();
+        return responseInfo -> HttpResponse.BodySubscribers.mapping(HttpResponse.BodySubscribers.ofInputStream(), body -> StallWatchdog.watch(body, timeout));
+    }
+
+    private HttpRequest.Builder newRequest(URL url) throws IOException {
+        try {
+            return HttpRequest.newBuilder(url.toURI()).timeout(readTimeout);
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            throw new IOException("Invalid link " + url + " : " + e.getMessage(), e);
+        }
+    }
+
+    private <T> HttpResponse<T> send(HttpRequest request, HttpResponse.BodyHandler<T> bodyHandler) throws IOException {
+        lastUsed = System.currentTimeMillis();
+        try {
+            return getClient().send(request, bodyHandler);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Request to " + request.uri() + " was interrupted");
+        }
+    }
+}
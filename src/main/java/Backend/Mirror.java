@@ -0,0 +1,119 @@
+package Backend;
+
+import java.net.URL;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This class holds one of the links a file can be downloaded from, with the connections working on it and the
+ * throughput measured for it while a multithreaded download is running. The counters are read and updated by the
+ * {@link MirrorSet} the mirror belongs to.
+ */
+public class Mirror {
+    private final URL url;
+    private final HttpTransport transport;
+    private final BandwidthLimit bandwidthLimit;
+    private final LongAdder receivedBytes = new LongAdder();
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile boolean dropped;
+    private volatile String ifRange; // the validator the ranges of this mirror are requested with, null to accept any version
+    // the fields below are guarded by the lock of the MirrorSet
+    private int connections;
+    private long bytesAtLastEvaluation;
+    private double speedPerConnection = -1; // bytes per second, -1 until it has been measured
+    private int slowEvaluations;
+
+    /**
+     * @param transport the connection(s) to the host of the mirror, usually taken from a {@link ConnectionPool}
+     * @param bandwidthLimit the limits that apply to the requests sent to this mirror
+     */
+    public Mirror(URL url, HttpTransport transport, BandwidthLimit bandwidthLimit) {
+        this.url = url;
+        this.transport = transport;
+        this.bandwidthLimit = bandwidthLimit;
+    }
+
+    public URL getUrl() {
+        return url;
+    }
+
+    public HttpTransport getTransport() {
+        return transport;
+    }
+
+    public BandwidthLimit getBandwidthLimit() {
+        return bandwidthLimit;
+    }
+
+    /**
+     * @return the If-Range validator of the version of the file this mirror was found to serve, or null if it is not known
+     */
+    public String getIfRange() {
+        return ifRange;
+    }
+
+    void setIfRange(String ifRange) {
+        this.ifRange = ifRange;
+    }
+
+    /**
+     * Counts bytes received from this mirror. Safe to call from any number of threads at once.
+     */
+    public void add(long bytes) {
+        receivedBytes.add(bytes);
+    }
+
+    public boolean isDropped() {
+        return dropped;
+    }
+
+    void drop() {
+        dropped = true;
+    }
+
+    int recordFailure() {
+        return consecutiveFailures.incrementAndGet();
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    int getConnections() {
+        return connections;
+    }
+
+    void connectionOpened() {
+        connections++;
+    }
+
+    void connectionClosed() {
+        connections--;
+    }
+
+    double getSpeedPerConnection() {
+        return speedPerConnection;
+    }
+
+    /**
+     * Measures the speed per connection since the last evaluation, if any connection was working on the mirror.
+     */
+    void evaluate(long elapsed) {
+        long bytes = receivedBytes.sum();
+        if (connections > 0) {
+            speedPerConnection = (bytes - bytesAtLastEvaluation) * 1000.0 / elapsed / connections;
+        }
+        bytesAtLastEvaluation = bytes;
+    }
+
+    /**
+     * @return the number of evaluations in a row in which the mirror was found too slow, including this one
+     */
+    int recordSlowEvaluation() {
+        return ++slowEvaluations;
+    }
+
+    void resetSlowEvaluations() {
+        slowEvaluations = 0;
+    }
+}
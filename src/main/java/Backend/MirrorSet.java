@@ -0,0 +1,227 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * This class spreads the connections of a multithreaded download over all the links that serve the same file.
+ * Before the download starts, every extra mirror is checked against the first link: it must send the same size,
+ * accept ranges and, if both send one, the same ETag. While the download runs, each new connection goes to the mirror
+ * that currently gives the most throughput per connection, so that the share of each mirror follows its measured
+ * speed. A mirror that keeps failing, or that is far slower than the best one, is dropped and its ranges go to the
+ * others; the last mirror left is never dropped.
+ */
+public class MirrorSet {
+    private static final MessageBroker M = Environment.getMessageBroker();
+    private static final long EVALUATION_INTERVAL = 2000; // 2 seconds
+    private static final double MIN_SPEED_RATIO = 0.1; // a mirror must reach a tenth of the speed per connection of the best one
+    private static final int MAX_SLOW_EVALUATIONS = 3; // evaluations in a row below that speed before the mirror is dropped
+    private static final int MAX_CONSECUTIVE_FAILURES = 3;
+    private final List<Mirror> mirrors = new ArrayList<>();
+    private long lastEvaluation;
+
+    /**
+     * @param primary the link the download was started with, whose answers the other mirrors are checked against
+     */
+    public MirrorSet(Mirror primary) {
+        mirrors.add(primary);
+    }
+
+    public synchronized void add(Mirror mirror) {
+        mirrors.add(mirror);
+    }
+
+    public synchronized Mirror getPrimary() {
+        return mirrors.get(0);
+    }
+
+    /**
+     * Probes the extra mirrors at the same time and drops the ones that do not serve the same file as the primary link.
+     * @param eTag the ETag sent for the primary link, or null if there was none
+     */
+    public void verify(long totalSize, String eTag) {
+        List<CompletableFuture<Void>> probes = new ArrayList<>();
+        for (Mirror mirror : getMirrors()) {
+            if (mirror != getPrimary()) {
+                probes.add(DownloadExecutor.start(() -> verify(mirror, totalSize, eTag)));
+            }
+        }
+        CompletableFuture.allOf(probes.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void verify(Mirror mirror, long totalSize, String eTag) {
+        String reason;
+        try {
+            HttpHeaders headers = mirror.getTransport().probe(mirror.getUrl());
+            long size = headers.firstValueAsLong("Content-Length").orElse(-1);
+            String mirrorETag = headers.firstValue("ETag").orElse(null);
+            if (size != totalSize) {
+                reason = "its size (" + size + " bytes) differs from the size of the file (" + totalSize + " bytes)";
+            } else if (!"bytes".equalsIgnoreCase(headers.firstValue("Accept-Ranges").orElse(null))) {
+                reason = "it does not accept ranges";
+            } else if (eTag != null && mirrorETag != null && !eTag.equals(mirrorETag)) {
+                reason = "its ETag " + mirrorETag + " differs from the ETag of the file " + eTag;
+            } else {
+                // the ranges of the mirror are checked against its own validators, which may differ from those of the primary link
+                mirror.setIfRange(HttpTransport.getIfRange(mirrorETag, headers.firstValue("Last-Modified").orElse(null)));
+                return;
+            }
+        } catch (IOException e) {
+            reason = "it could not be reached : " + Objects.requireNonNullElse(e.getMessage(), e.getClass().getSimpleName());
+        }
+        mirror.drop();
+        M.msgLogWarning("Not using mirror " + mirror.getUrl() + " because " + reason);
+    }
+
+    /**
+     * Picks the mirror a new connection should download from and counts the connection against it.
+     * Mirrors that have no connection yet come first, then the one with the highest speed per connection.
+     */
+    public synchronized Mirror acquire() {
+        double averageSpeed = getAverageSpeedPerConnection();
+        Mirror best = null;
+        double bestScore = -1;
+        for (Mirror mirror : mirrors) {
+            if (mirror.isDropped()) {
+                continue;
+            }
+            double score = mirror.getSpeedPerConnection();
+            if (score < 0) { // not measured yet
+                score = mirror.getConnections() == 0 ? Double.MAX_VALUE : averageSpeed;
+            }
+            if (best == null || score > bestScore || (score == bestScore && mirror.getConnections() < best.getConnections())) {
+                best = mirror;
+                bestScore = score;
+            }
+        }
+        if (best == null) { // cannot happen as the last mirror is never dropped, but the primary link is the safest choice
+            best = mirrors.get(0);
+        }
+        best.connectionOpened();
+        return best;
+    }
+
+    /**
+     * Counts a new connection against the primary link, for the connection that continues reading the answer to the
+     * probe, which was sent to the primary link.
+     */
+    public synchronized Mirror acquirePrimary() {
+        Mirror primary = getPrimary();
+        primary.connectionOpened();
+        return primary;
+    }
+
+    /**
+     * Called by a connection once it stops downloading from the mirror.
+     */
+    public synchronized void release(Mirror mirror) {
+        mirror.connectionClosed();
+    }
+
+    /**
+     * Called when a range could be downloaded from the mirror.
+     */
+    public void succeeded(Mirror mirror) {
+        mirror.recordSuccess();
+    }
+
+    /**
+     * Called when a request to the mirror failed. After a few failures in a row, the mirror is dropped, unless it is
+     * the last one left.
+     * @return true if the mirror was dropped, in which case the connection should stop and leave its range to the others
+     */
+    public synchronized boolean failed(Mirror mirror, IOException e) {
+        if (mirror.recordFailure() >= MAX_CONSECUTIVE_FAILURES && drop(mirror)) {
+            M.msgLogWarning("Dropping mirror " + mirror.getUrl() + " after " + MAX_CONSECUTIVE_FAILURES + " failed requests in a row : " + e.getMessage());
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Called when a mirror sent another version of the file than the one being downloaded. A mirror other than the
+     * primary link is dropped, as long as another one is left, and otherwise the file itself changed.
+     * @return true if the mirror was dropped, or false if the download has to start over
+     */
+    public synchronized boolean changed(Mirror mirror) {
+        if (mirror != getPrimary() && drop(mirror)) {
+            M.msgLogWarning("Dropping mirror " + mirror.getUrl() + " because it now serves another version of the file");
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Measures the speed of every mirror and drops the ones that crawl. This is meant to be called regularly by the
+     * thread that watches over the download.
+     */
+    public synchronized void update() {
+        long now = System.currentTimeMillis();
+        long elapsed = now - lastEvaluation;
+        if (lastEvaluation != 0 && elapsed < EVALUATION_INTERVAL) {
+            return;
+        }
+        lastEvaluation = now;
+        double bestSpeed = 0;
+        for (Mirror mirror : mirrors) {
+            if (!mirror.isDropped()) {
+                mirror.evaluate(Math.max(elapsed, 1));
+                bestSpeed = Math.max(bestSpeed, mirror.getSpeedPerConnection());
+            }
+        }
+        for (Mirror mirror : mirrors) {
+            if (mirror.isDropped() || mirror.getSpeedPerConnection() < 0) {
+                continue;
+            }
+            if (mirror.getSpeedPerConnection() >= bestSpeed * MIN_SPEED_RATIO) {
+                mirror.resetSlowEvaluations();
+            } else if (mirror.recordSlowEvaluation() >= MAX_SLOW_EVALUATIONS && drop(mirror)) {
+                M.msgLogWarning("Dropping mirror " + mirror.getUrl() + " because it is much slower than the others");
+            }
+        }
+    }
+
+    /**
+     * @return the number of mirrors that are still in use
+     */
+    public synchronized int getLiveCount() {
+        int count = 0;
+        for (Mirror mirror : mirrors) {
+            if (!mirror.isDropped()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private synchronized List<Mirror> getMirrors() {
+        return new ArrayList<>(mirrors);
+    }
+
+    private boolean drop(Mirror mirror) {
+        if (mirror.isDropped() || getLiveCount() < 2) {
+            return false;
+        }
+        mirror.drop();
+        return true;
+    }
+
+    private double getAverageSpeedPerConnection() {
+        double sum = 0;
+        int count = 0;
+        for (Mirror mirror : mirrors) {
+            if (!mirror.isDropped() && mirror.getSpeedPerConnection() >= 0) {
+                sum += mirror.getSpeedPerConnection();
+                count++;
+            }
+        }
+        return count == 0 ? 0 : sum / count;
+    }
+}
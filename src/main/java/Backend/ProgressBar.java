@@ -0,0 +1,115 @@
+package Backend;
+
+import Enums.UnitConverter;
+import Utils.Environment;
+import Utils.MessageBroker;
+
+import static Utils.DriftyConstants.*;
+
+/**
+ * This is the class responsible for showing the progress bar of one download in the CLI (Command Line Interface).
+ * The bar is drawn by the {@link ProgressRenderer}, together with the bars of any other download that is running at
+ * the same time, from the {@link DownloadProgress} of the download, so the download threads never wait for the terminal.
+ * A multithreaded download is shown with the same single bar as any other, since its connections steal work from each
+ * other and no longer each own a fixed part of the file whose progress could be shown on its own.
+ */
+public class ProgressBar implements ProgressListener {
+    private final static MessageBroker M = Environment.getMessageBroker();
+    private static final int CHAR_AMOUNT = 20; // value to determine length of terminal progressbar
+    private static final char[] SPIN_BARS = new char[]{'/', '-', '\\', '|'};
+    private final String fileName;
+    private final String dir;
+    private int spinBarIndex = -1;
+    private volatile DownloadProgress progress;
+
+    public ProgressBar(String fileName, String dir) {
+        this.fileName = fileName;
+        this.dir = dir;
+    }
+
+    @Override
+    public void onStart(DownloadProgress progress) {
+        this.progress = progress;
+        ProgressRenderer.add(this);
+    }
+
+    @Override
+    public void onProgress(DownloadProgress progress) {
+        // the bar is redrawn on the schedule of the renderer, from the progress passed to onStart()
+    }
+
+    /**
+     * Draws the bar one last time and prints the result of the download.
+     */
+    @Override
+    public void onFinish(boolean complete) {
+        if (progress != null) {
+            ProgressRenderer.finish(this, complete);
+        }
+    }
+
+    /**
+     * Appends the current state of the bar to the line, in the form
+     * {@code [/]  file.zip  [====....42.00%.........](1.50 GB)  12.34 MB/s  ETA 00:01:05}.
+     */
+    void render(StringBuilder line) {
+        spinBarIndex = (spinBarIndex + 1) % SPIN_BARS.length;
+        long totalSize = progress.getTotalSize();
+        long downloadedBytes = progress.getDownloadedBytes();
+        line.append('[').append(SPIN_BARS[spinBarIndex]).append("]  ").append(fileName);
+        if (totalSize <= 0) { // the server did not send the size, so only the amount downloaded can be shown
+            line.append("  (");
+            UnitConverter.append(line, downloadedBytes, 2);
+            line.append(")  ");
+            appendSpeed(line);
+            return;
+        }
+        int filled = (int) Math.min(CHAR_AMOUNT, CHAR_AMOUNT * downloadedBytes / totalSize);
+        line.append("  [");
+        for (int i = 0; i < CHAR_AMOUNT / 2 - 2; i++) {
+            line.append(i < filled ? '=' : '.');
+        }
+        UnitConverter.appendFixed(line, 100.0 * downloadedBytes / totalSize, 2, true);
+        line.append('%');
+        for (int i = CHAR_AMOUNT / 2 + 1; i < CHAR_AMOUNT; i++) {
+            line.append(i < filled ? '=' : '.');
+        }
+        line.append("](");
+        UnitConverter.append(line, totalSize, 2);
+        line.append(")  ");
+        appendSpeed(line);
+        line.append("  ETA ");
+        appendTime(line, progress.getSecondsLeft());
+    }
+
+    private void appendSpeed(StringBuilder line) {
+        UnitConverter.append(line, progress.getSpeed(), 2);
+        line.append("/s");
+    }
+
+    private static void appendTime(StringBuilder line, long seconds) {
+        if (seconds < 0) {
+            line.append("--:--:--");
+            return;
+        }
+        appendTwoDigits(line, seconds / 3600).append(':');
+        appendTwoDigits(line, seconds / 60 % 60).append(':');
+        appendTwoDigits(line, seconds % 60);
+    }
+
+    private static StringBuilder appendTwoDigits(StringBuilder line, long value) {
+        if (value < 10) {
+            line.append('0');
+        }
+        return line.append(value);
+    }
+
+    void printFinalMessage(boolean complete) {
+        if (complete) {
+            String sizeWithUnit = UnitConverter.format(progress.getDownloadedBytes(), 2);
+            M.msgDownloadInfo(SUCCESSFULLY_DOWNLOADED + fileName + OF_SIZE + sizeWithUnit + " at " + dir + fileName);
+        } else {
+            M.msgDownloadError(DOWNLOAD_FAILED);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package Backend;
+
+/**
+ * This interface lets the front ends follow a download run by the {@link DownloadEngine}: the CLI draws its progress
+ * bar from it and the GUI updates the progress of its task. The methods are called from the thread running the
+ * download, so they have to return quickly and leave any drawing to the thread of the front end.
+ */
+public interface ProgressListener {
+    /**
+     * Called once, before the first byte is received.
+     * @param progress the progress of the download, which the front end may keep and read from any thread
+     */
+    void onStart(DownloadProgress progress);
+
+    /**
+     * Called whenever a new sample of the progress was taken, a few times per second while data is arriving.
+     */
+    void onProgress(DownloadProgress progress);
+
+    /**
+     * Called once the download is over, before the checksums are reported.
+     * @param complete whether the whole file was downloaded
+     */
+    void onFinish(boolean complete);
+}
@@ -0,0 +1,100 @@
+package Backend;
+
+import Utils.Utility;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class draws the progress bars of the CLI (Command Line Interface), one line per running download, and redraws
+ * them in place four times per second.
+ * Every frame is built in the same {@link StringBuilder} and written from the same character buffer, and the numbers
+ * are formatted by hand, so drawing the bars does not create any garbage, however many downloads are running.
+ */
+public final class ProgressRenderer {
+    private static final long REFRESH_INTERVAL = 250; // milliseconds
+    private static final Object LOCK = new Object();
+    private static final List<ProgressBar> BARS = new ArrayList<>();
+    private static final StringBuilder FRAME = new StringBuilder(256);
+    private static final Writer OUT = new OutputStreamWriter(System.out, System.out.charset());
+    private static char[] buffer = new char[256];
+    private static Thread thread;
+    private static int linesDrawn; // lines of the last frame that are still on the screen, which the next frame overwrites
+
+    private ProgressRenderer() {
+    }
+
+    static void add(ProgressBar bar) {
+        synchronized (LOCK) {
+            BARS.add(bar);
+            if (thread == null) {
+                thread = new Thread(ProgressRenderer::run, "Drifty progress renderer");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+    }
+
+    /**
+     * Draws the final state of the bar above the others, removes it and prints the result of its download.
+     */
+    static void finish(ProgressBar bar, boolean complete) {
+        synchronized (LOCK) {
+            FRAME.setLength(0);
+            moveToFirstLine();
+            FRAME.append("\033[J"); // the remaining bars are drawn again below the result
+            bar.render(FRAME);
+            FRAME.append('\n');
+            write();
+            BARS.remove(bar);
+            linesDrawn = 0;
+            bar.printFinalMessage(complete);
+        }
+    }
+
+    private static void run() {
+        while (true) {
+            Utility.sleep(REFRESH_INTERVAL);
+            synchronized (LOCK) {
+                if (BARS.isEmpty()) {
+                    thread = null;
+                    return;
+                }
+                FRAME.setLength(0);
+                moveToFirstLine();
+                for (int i = 0; i < BARS.size(); i++) {
+                    FRAME.append("\033[2K");
+                    BARS.get(i).render(FRAME);
+                    if (i < BARS.size() - 1) {
+                        FRAME.append('\n');
+                    }
+                }
+                linesDrawn = BARS.size();
+                write();
+            }
+        }
+    }
+
+    private static void moveToFirstLine() {
+        FRAME.append('\r');
+        if (linesDrawn > 1) {
+            FRAME.append("\033[").append(linesDrawn - 1).append('A');
+        }
+    }
+
+    private static void write() {
+        int length = FRAME.length();
+        if (buffer.length < length) {
+            buffer = new char[length * 2];
+        }
+        FRAME.getChars(0, length, buffer, 0);
+        try {
+            OUT.write(buffer, 0, length);
+            OUT.flush();
+        } catch (IOException ignored) { // the progress is only informative
+        }
+    }
+}
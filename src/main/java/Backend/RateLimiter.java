@@ -0,0 +1,164 @@
+package Backend;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * This class limits the bandwidth of downloads with a token bucket. The bucket fills up at the configured rate and
+ * every connection takes tokens out of it for the bytes it receives. A connection that takes more than is available
+ * goes into debt and waits until the debt is paid back, so the connections sharing a limiter are served in the order
+ * they asked, and the share of each one grows by itself as the others finish.
+ * There is one limiter for all the downloads, one for each host and one for each download (see {@link BandwidthLimit}).
+ * A rate of 0 means that there is no limit, and the rate of every limiter can be changed while downloads are running.
+ */
+public class RateLimiter {
+    public static final long UNLIMITED = 0;
+    public static final RateLimiter GLOBAL = new RateLimiter(UNLIMITED);
+    private static final Map<String, RateLimiter> HOST_LIMITERS = new ConcurrentHashMap<>();
+    private static final long NANOS_PER_SECOND = 1_000_000_000;
+    private static final long MIN_STEP_SIZE = 16 * 1024; // 16 KB
+    private long bytesPerSecond;
+    private double tokens; // negative while the connections are in debt
+    private long lastRefill = System.nanoTime();
+
+    public RateLimiter(long bytesPerSecond) {
+        this.bytesPerSecond = Math.max(UNLIMITED, bytesPerSecond);
+    }
+
+    public static RateLimiter forHost(String host) {
+        return HOST_LIMITERS.computeIfAbsent(host.toLowerCase(Locale.ROOT), h -> new RateLimiter(UNLIMITED));
+    }
+
+    public synchronized long getRate() {
+        return bytesPerSecond;
+    }
+
+    public synchronized void setRate(long bytesPerSecond) {
+        refill();
+        this.bytesPerSecond = Math.max(UNLIMITED, bytesPerSecond);
+        if (this.bytesPerSecond == UNLIMITED) {
+            tokens = 0;
+        } else {
+            tokens = Math.min(tokens, this.bytesPerSecond);
+        }
+    }
+
+    /**
+     * @return how many bytes a connection should read before taking tokens again, so that it waits about a tenth of a
+     * second at a time instead of receiving a large block at full speed and then waiting for seconds
+     */
+    public synchronized long getStepSize() {
+        if (bytesPerSecond == UNLIMITED) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(MIN_STEP_SIZE, bytesPerSecond / 10);
+    }
+
+    /**
+     * Takes the tokens for the given number of bytes out of the bucket.
+     * @return how many nanoseconds the caller has to wait before receiving more
+     */
+    synchronized long reserve(long bytes) {
+        if (bytesPerSecond == UNLIMITED) {
+            return 0;
+        }
+        refill();
+        tokens -= bytes;
+        if (tokens >= 0) {
+            return 0;
+        }
+        return (long) (-tokens * NANOS_PER_SECOND / bytesPerSecond);
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        if (bytesPerSecond != UNLIMITED) {
+            // at most one second worth of bytes is saved up, which bounds the burst after an idle period
+            tokens = Math.min(bytesPerSecond, tokens + (double) (now - lastRefill) * bytesPerSecond / NANOS_PER_SECOND);
+        }
+        lastRefill = now;
+    }
+
+    /**
+     * Applies a comma separated list of limits, such as {@code 2M,example.com=500K}. An entry without a host sets the
+     * global limit, and a limit of 0 removes the limit. The limiters that are not mentioned keep their rate.
+     * @throws NumberFormatException if any of the rates is not valid, in which case no limit is changed
+     */
+    public static void applyLimits(String limits) {
+        Map<String, Long> hostRates = new LinkedHashMap<>();
+        Long globalRate = null;
+        for (String entry : limits.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int separator = entry.indexOf('=');
+            if (separator == -1) {
+                globalRate = parseRate(entry);
+            } else {
+                hostRates.put(entry.substring(0, separator).trim(), parseRate(entry.substring(separator + 1)));
+            }
+        }
+        if (globalRate != null) {
+            GLOBAL.setRate(globalRate);
+        }
+        hostRates.forEach((host, rate) -> forHost(host).setRate(rate));
+    }
+
+    /**
+     * @return the current limits in the form accepted by {@link #applyLimits(String)}
+     */
+    public static String getLimits() {
+        StringBuilder limits = new StringBuilder(formatRate(GLOBAL.getRate()));
+        HOST_LIMITERS.forEach((host, limiter) -> {
+            long rate = limiter.getRate();
+            if (rate != UNLIMITED) {
+                limits.append(',').append(host).append('=').append(formatRate(rate));
+            }
+        });
+        return limits.toString();
+    }
+
+    /**
+     * Parses a rate in bytes per second, with an optional K, M or G suffix (powers of 1024), as used by yt-dlp.
+     */
+    public static long parseRate(String rate) {
+        String value = rate.trim().toUpperCase(Locale.ROOT);
+        if (value.endsWith("/S")) {
+            value = value.substring(0, value.length() - 2);
+        }
+        if (value.endsWith("B")) {
+            value = value.substring(0, value.length() - 1);
+        }
+        if (value.isEmpty() || value.equals("OFF") || value.equals("UNLIMITED")) {
+            return UNLIMITED;
+        }
+        long multiplier = switch (value.charAt(value.length() - 1)) {
+            case 'K' -> 1024;
+            case 'M' -> 1024 * 1024;
+            case 'G' -> 1024 * 1024 * 1024;
+            default -> 1;
+        };
+        if (multiplier != 1) {
+            value = value.substring(0, value.length() - 1);
+        }
+        double bytesPerSecond = Double.parseDouble(value) * multiplier;
+        if (bytesPerSecond < 0 || Double.isNaN(bytesPerSecond)) {
+            throw new NumberFormatException("Invalid rate : " + rate);
+        }
+        return (long) bytesPerSecond;
+    }
+
+    /**
+     * @return the rate in the form accepted by {@link #parseRate(String)} and by the {@code --limit-rate} option of yt-dlp
+     */
+    public static String formatRate(long bytesPerSecond) {
+        if (bytesPerSecond != UNLIMITED && bytesPerSecond % (1024 * 1024) == 0) {
+            return bytesPerSecond / (1024 * 1024) + "M";
+        } else if (bytesPerSecond != UNLIMITED && bytesPerSecond % 1024 == 0) {
+            return bytesPerSecond / 1024 + "K";
+        }
+        return String.valueOf(bytesPerSecond);
+    }
+}
@@ -0,0 +1,30 @@
+package Backend;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * This class decides how long a connection waits before trying a failed segment again. The wait doubles with every
+ * failed attempt, up to a maximum, and a random part of it is left out (jitter) so that connections that failed
+ * together do not all come back at the same moment. After a number of attempts without any progress, the segment
+ * is given up on.
+ */
+public final class RetryPolicy {
+    public static final int MAX_ATTEMPTS = 5;
+    private static final long BASE_DELAY = 500; // 0.5 seconds
+    private static final long MAX_DELAY = 30000; // 30 seconds
+
+    private RetryPolicy() {
+    }
+
+    /**
+     * @param attempt the number of failed attempts so far, starting at 1
+     * @return the number of milliseconds to wait before the next attempt, or -1 if there should be no more attempts
+     */
+    public static long getDelay(int attempt) {
+        if (attempt >= MAX_ATTEMPTS) {
+            return -1;
+        }
+        long delay = Math.min(MAX_DELAY, BASE_DELAY << (attempt - 1));
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+}
@@ -0,0 +1,166 @@
+package Backend;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class represents a byte range of a file that is being downloaded by one connection. The end of the range
+ * can shrink while it is being downloaded, when another connection steals its upper half, so workers must keep
+ * asking for the remaining bytes instead of caching the end.
+ * At the end of a download, a second connection may download the same range as a hedge against a slow one. Both
+ * then hand every piece of data they receive to {@link #take(ByteBuffer, long)}, so that each byte is written by the
+ * connection that receives it first, and the one that completes the range cancels the other.
+ */
+public class Segment {
+    private final long start;
+    private long position;
+    private long end;
+    private long claimedAt;
+    private long positionWhenClaimed;
+    private long positionAtLastFailure;
+    private int failedAttempts;
+    private final List<InputStream> bodies = new ArrayList<>(); // the responses the range is being read from, one per connection
+
+    public Segment(long start, long end) {
+        this.start = start;
+        this.position = start;
+        this.positionAtLastFailure = start;
+        this.end = end;
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public synchronized long getPosition() {
+        return position;
+    }
+
+    public synchronized long getEnd() {
+        return end;
+    }
+
+    public synchronized long remaining() {
+        return end - position + 1;
+    }
+
+    public synchronized boolean hasRemaining() {
+        return position <= end;
+    }
+
+    /**
+     * Marks the next {@code bytes} bytes of the segment as written.
+     * @return true if there are still bytes left to download in this segment
+     */
+    public synchronized boolean advance(long bytes) {
+        position += bytes;
+        return position <= end;
+    }
+
+    /**
+     * Takes the data a connection received for the range from {@code streamPosition} on. The data is narrowed down to
+     * the bytes that are still missing, leaving out those that another connection working on the same range already
+     * took and those past the end of the range, and the segment moves past them.
+     * @return the position in the file of the data that is left, which the caller must write
+     */
+    public synchronized long take(ByteBuffer data, long streamPosition) {
+        long dataEnd = Math.min(streamPosition + data.remaining(), end + 1);
+        long first = Math.max(position, streamPosition);
+        if (first >= dataEnd) {
+            data.position(data.limit());
+            return first;
+        }
+        data.limit(data.position() + (int) (dataEnd - streamPosition));
+        data.position(data.position() + (int) (first - streamPosition));
+        position = dataEnd;
+        return first;
+    }
+
+    /**
+     * Registers the body of a response the range is being read from, so that it can be closed by {@link #cancelReads()}.
+     */
+    synchronized void attach(InputStream body) {
+        bodies.add(body);
+    }
+
+    synchronized void detach(InputStream body) {
+        bodies.remove(body);
+    }
+
+    /**
+     * Closes the responses that are still being read for this range, once another connection completed it.
+     * Their reads then fail, which the connections take as the end of the segment rather than as an error.
+     */
+    void cancelReads() {
+        List<InputStream> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(bodies);
+            bodies.clear();
+        }
+        for (InputStream body : cancelled) {
+            try {
+                body.close();
+            } catch (IOException ignored) { // the data is not needed anymore
+            }
+        }
+    }
+
+    /**
+     * Records a failed attempt to download this segment. An attempt that still moved the segment forward starts the
+     * count over, so that a long segment on a flaky link is not given up on while it keeps making progress.
+     * @return the number of failed attempts in a row without any progress
+     */
+    public synchronized int recordFailure() {
+        if (position > positionAtLastFailure) {
+            failedAttempts = 0;
+        }
+        positionAtLastFailure = position;
+        return ++failedAttempts;
+    }
+
+    synchronized void claim() {
+        claimedAt = System.currentTimeMillis();
+        positionWhenClaimed = position;
+    }
+
+    /**
+     * @return the number of milliseconds since the range was claimed by the connection working on it
+     */
+    public synchronized long getClaimedTime() {
+        return System.currentTimeMillis() - claimedAt;
+    }
+
+    /**
+     * @return the download speed of the connection currently working on this segment, in bytes per second
+     */
+    public synchronized double getSpeed() {
+        long elapsed = System.currentTimeMillis() - claimedAt;
+        if (elapsed <= 0) {
+            return 0;
+        }
+        return (position - positionWhenClaimed) * 1000.0 / elapsed;
+    }
+
+    /**
+     * Hands the upper half of the remaining range to a new segment, as long as the remaining range is at least twice
+     * {@code minSize} bytes long. The upper half starts at the multiple of {@code blockSize} nearest to the middle,
+     * so that a block is never shared by the two halves.
+     * @return the new segment, or null if this segment is too small to be split
+     */
+    synchronized Segment splitUpperHalf(long minSize, long blockSize) {
+        long remaining = end - position + 1;
+        if (remaining < 2 * minSize) {
+            return null;
+        }
+        long middle = (position + remaining / 2 + blockSize / 2) / blockSize * blockSize;
+        if (middle <= position || middle > end) {
+            return null;
+        }
+        Segment upperHalf = new Segment(middle, end);
+        end = middle - 1;
+        return upperHalf;
+    }
+}
@@ -0,0 +1,143 @@
+package Backend;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * This class hands out the byte ranges of a multithreaded download to the connections working on it.
+ * The file is cut into chunks that are smaller than an equal share per connection, and every connection keeps
+ * taking the next chunk from the shared pool when it finishes one. Once the pool is empty, a connection that runs
+ * out of work steals the upper half of the range that is expected to finish last (the largest remaining range
+ * divided by the speed of the connection working on it), so that every connection stays busy until the last byte.
+ * Once every remaining range is too small to be split, the download enters its endgame: a connection that runs out of
+ * work requests a copy of the range that is expected to finish last, if that is still going to take a while, so that
+ * a single slow connection cannot hold up the end of a large download. The copy that gets the bytes first writes them,
+ * and the range is done as soon as either copy reaches its end.
+ */
+public class SegmentScheduler {
+    private static final long MIN_SEGMENT_SIZE = 1024 * 1024; // 1 MB
+    private static final int CHUNKS_PER_CONNECTION = 4;
+    private static final int MAX_COPIES = 2; // connections working on the same range in the endgame
+    private static final long MIN_HEDGE_TIME = 3000; // milliseconds a range is expected to take at least for a copy to be worth requesting
+    private static final long MIN_MEASURE_TIME = 1000; // milliseconds a range must have been downloaded for to know its speed
+    private final Deque<Segment> pending = new ArrayDeque<>();
+    private final List<Segment> active = new ArrayList<>();
+
+    public SegmentScheduler(long totalSize, int numberOfConnections) {
+        this(List.of(new Segment(0, totalSize - 1)), numberOfConnections);
+    }
+
+    /**
+     * Creates a scheduler for the given ranges only, which is used to download the missing parts of a resumed download.
+     */
+    public SegmentScheduler(List<Segment> ranges, int numberOfConnections) {
+        long totalSize = 0;
+        for (Segment range : ranges) {
+            totalSize += range.remaining();
+        }
+        // chunks start at block boundaries of the journal, so that no block is shared by two chunks and every block completes within one range
+        long chunkSize = Math.max(MIN_SEGMENT_SIZE, totalSize / ((long) numberOfConnections * CHUNKS_PER_CONNECTION));
+        chunkSize = Math.max(DownloadJournal.BLOCK_SIZE, chunkSize / DownloadJournal.BLOCK_SIZE * DownloadJournal.BLOCK_SIZE);
+        for (Segment range : ranges) {
+            for (long start = range.getStart(); start <= range.getEnd(); start += chunkSize) {
+                pending.addLast(new Segment(start, Math.min(start + chunkSize - 1, range.getEnd())));
+            }
+        }
+    }
+
+    /**
+     * @return the next range to download, or null if there is nothing left that is worth taking over
+     */
+    public synchronized Segment next() {
+        Segment segment = pending.pollFirst();
+        if (segment == null) {
+            segment = steal();
+        }
+        if (segment != null) {
+            segment.claim();
+        } else {
+            segment = findSlowestForHedging(); // nothing is left to steal, and the speed of the range is still measured from its first connection
+        }
+        if (segment != null) {
+            active.add(segment);
+        }
+        return segment;
+    }
+
+    /**
+     * Gives a segment back to the scheduler once the connection stops working on it. Any bytes of the segment that
+     * were not downloaded go back into the pool for the next connection that asks for work, unless another connection
+     * is still working on the same range. Once the range is complete, the reads of the other connections are cancelled.
+     */
+    public void finished(Segment segment) {
+        boolean hasCopies;
+        synchronized (this) {
+            active.remove(segment);
+            hasCopies = active.contains(segment);
+            if (segment.hasRemaining() && !hasCopies) {
+                pending.addFirst(segment);
+            }
+        }
+        if (hasCopies && !segment.hasRemaining()) {
+            segment.cancelReads();
+        }
+    }
+
+    /**
+     * @return true if another connection would get something to download right now
+     */
+    public synchronized boolean hasWork() {
+        if (!pending.isEmpty()) {
+            return true;
+        }
+        for (Segment segment : active) {
+            if (segment.remaining() >= 2 * MIN_SEGMENT_SIZE) {
+                return true;
+            }
+        }
+        return findSlowestForHedging() != null;
+    }
+
+    public synchronized boolean isComplete() {
+        return pending.isEmpty() && active.isEmpty();
+    }
+
+    private Segment steal() {
+        Segment slowest = null;
+        double longestTimeLeft = -1;
+        for (Segment segment : active) {
+            long remaining = segment.remaining();
+            if (remaining < 2 * MIN_SEGMENT_SIZE) {
+                continue;
+            }
+            double timeLeft = remaining / Math.max(segment.getSpeed(), 1);
+            if (timeLeft > longestTimeLeft) {
+                longestTimeLeft = timeLeft;
+                slowest = segment;
+            }
+        }
+        return slowest == null ? null : slowest.splitUpperHalf(MIN_SEGMENT_SIZE, DownloadJournal.BLOCK_SIZE);
+    }
+
+    /**
+     * @return the range that is expected to finish last, if it is still going to take long enough to be worth a copy
+     */
+    private Segment findSlowestForHedging() {
+        Segment slowest = null;
+        double longestTimeLeft = MIN_HEDGE_TIME;
+        for (Segment segment : active) {
+            if (!segment.hasRemaining() || segment.getClaimedTime() < MIN_MEASURE_TIME || Collections.frequency(active, segment) >= MAX_COPIES) {
+                continue;
+            }
+            double timeLeft = segment.remaining() * 1000.0 / Math.max(segment.getSpeed(), 1);
+            if (timeLeft > longestTimeLeft) {
+                longestTimeLeft = timeLeft;
+                slowest = segment;
+            }
+        }
+        return slowest;
+    }
+}
@@ -0,0 +1,111 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Set;
+
+/**
+ * This class sizes the download target once, up front, and lets every segment of a multithreaded download
+ * write its own byte range straight into that file through a single shared {@link FileChannel}.
+ * Positional reads and writes on a FileChannel are safe to use from several threads at once, so no
+ * temporary part files and no merge pass are needed.
+ * In memory-mapped mode, every worker writes through its own {@link FileWindow} instead, which maps the part of the
+ * file it is working on into memory, so that no write call is needed per block and the operating system decides
+ * when to write the data back to the disk.
+ */
+public class SegmentedFileWriter implements Closeable {
+    private static final MessageBroker M = Environment.getMessageBroker();
+    // network and user-space file systems where pages are written back through a slow or unreliable path, so writes are better off explicit
+    private static final Set<String> UNMAPPABLE_FILE_SYSTEMS = Set.of("nfs", "nfs4", "cifs", "smbfs", "smb2", "afpfs", "webdav", "davfs", "9p", "fuse", "fuseblk", "fuse.sshfs");
+    private final RandomAccessFile file;
+    private final FileChannel fileChannel;
+    private final long totalSize;
+    private final boolean memoryMapped;
+
+    public SegmentedFileWriter(File target, long totalSize) throws IOException {
+        this(target, totalSize, false);
+    }
+
+    /**
+     * @param memoryMapped whether to write through memory-mapped windows, which is ignored on file systems where
+     * memory mapping is a poor fit
+     */
+    public SegmentedFileWriter(File target, long totalSize, boolean memoryMapped) throws IOException {
+        this.totalSize = totalSize;
+        this.file = new RandomAccessFile(target, "rw");
+        this.file.setLength(totalSize);
+        this.fileChannel = file.getChannel();
+        this.memoryMapped = memoryMapped && canMemoryMap(target);
+    }
+
+    private static boolean canMemoryMap(File target) {
+        try {
+            String fileSystem = Files.getFileStore(target.toPath()).type().toLowerCase();
+            if (UNMAPPABLE_FILE_SYSTEMS.contains(fileSystem)) {
+                M.msgLogInfo("Memory-mapped output is not used on " + fileSystem + " file systems; writing " + target.getName() + " directly instead");
+                return false;
+            }
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * Opens the view of the file that one worker writes its segments through. It is memory-mapped in memory-mapped
+     * mode, and writes straight into the shared file channel otherwise.
+     */
+    public FileWindow openWindow() {
+        return new FileWindow(this, memoryMapped ? fileChannel : null);
+    }
+
+    /**
+     * Writes all the remaining bytes of the buffer into the file starting at {@code position}.
+     * @return the number of bytes written
+     */
+    public int write(ByteBuffer source, long position) throws IOException {
+        int written = 0;
+        while (source.hasRemaining()) {
+            written += fileChannel.write(source, position + written);
+        }
+        return written;
+    }
+
+    /**
+     * Reads the file from {@code position} into the buffer, which is used to compute the checksum of the parts that
+     * were written by other threads or before a download was resumed.
+     * @return the number of bytes read
+     */
+    public int read(ByteBuffer target, long position) throws IOException {
+        return fileChannel.read(target, position);
+    }
+
+    /**
+     * Forces everything written so far, including through memory-mapped windows, out of the cache of the operating
+     * system onto the disk.
+     */
+    public void sync() throws IOException {
+        fileChannel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        file.close();
+    }
+}
@@ -0,0 +1,146 @@
+package Backend;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class watches the bodies of all the responses being read, so that a connection that silently stopped
+ * delivering data (a half-open socket, a server that hangs) cannot block a download, and with it a whole batch, forever.
+ * A body is aborted if a read waits longer than the read timeout for the next byte, or if the body keeps delivering
+ * less than a minimum speed for a while. Only the time spent waiting for the network counts, so a connection that is
+ * held back by a bandwidth limit or by a slow disk is never taken for a stalled one.
+ * The aborted read fails with a {@link SocketTimeoutException}, on which the range of a multithreaded download is
+ * handed to a new connection.
+ */
+public final class StallWatchdog {
+    private static final long CHECK_INTERVAL = 500; // milliseconds
+    private static final long MIN_SPEED = 1024; // bytes per second, below which a body counts as stalled
+    private static final long STALL_PERIOD = 20_000_000_000L; // 20 seconds of waiting for the network below the minimum speed, in nanoseconds
+    private static final Set<WatchedInputStream> WATCHED = ConcurrentHashMap.newKeySet();
+    private static ScheduledExecutorService executor;
+
+    private StallWatchdog() {
+    }
+
+    /**
+     * Wraps the body of a response, which is watched until it is read to the end, closed or aborted.
+     * @param readTimeout the longest time in milliseconds a read may wait for data
+     */
+    public static InputStream watch(InputStream body, long readTimeout) {
+        WatchedInputStream watched = new WatchedInputStream(body, readTimeout * 1_000_000);
+        WATCHED.add(watched);
+        startIfNeeded();
+        return watched;
+    }
+
+    private static synchronized void startIfNeeded() {
+        if (executor == null) {
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "Stall Watchdog");
+                thread.setDaemon(true);
+                return thread;
+            });
+            executor.scheduleWithFixedDelay(StallWatchdog::check, CHECK_INTERVAL, CHECK_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static void check() {
+        long now = System.nanoTime();
+        for (WatchedInputStream body : WATCHED) {
+            String reason = body.getStallReason(now);
+            if (reason != null) {
+                body.abort(reason);
+            }
+        }
+    }
+
+    private static final class WatchedInputStream extends FilterInputStream {
+        private final long readTimeout; // nanoseconds
+        // written by the reading thread only
+        private volatile long readingSince; // when the current read started waiting, 0 if no read is waiting
+        private volatile long readingTime; // total time spent waiting in reads that returned
+        private volatile long receivedBytes;
+        private volatile String abortReason;
+        // used by the watchdog thread only
+        private long windowReadingTime;
+        private long windowBytes;
+
+        private WatchedInputStream(InputStream in, long readTimeout) {
+            super(in);
+            this.readTimeout = readTimeout;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            long start = System.nanoTime();
+            readingSince = start;
+            try {
+                int bytesRead = super.read(buffer, offset, length);
+                if (bytesRead > 0) {
+                    receivedBytes += bytesRead;
+                } else if (bytesRead == -1) { // nothing is left to wait for, even if the body is never closed
+                    WATCHED.remove(this);
+                }
+                return bytesRead;
+            } catch (IOException e) {
+                if (abortReason != null) {
+                    throw new SocketTimeoutException(abortReason);
+                }
+                throw e;
+            } finally {
+                readingSince = 0;
+                readingTime += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            WATCHED.remove(this);
+            super.close();
+        }
+
+        /**
+         * @return why the body should be aborted, or null if it is still delivering data
+         */
+        private String getStallReason(long now) {
+            long since = readingSince;
+            if (since != 0 && now - since > readTimeout) {
+                return "No data received for " + readTimeout / 1_000_000_000 + " seconds";
+            }
+            long reading = readingTime + (since != 0 ? now - since : 0);
+            if (reading - windowReadingTime < STALL_PERIOD) {
+                return null;
+            }
+            long bytes = receivedBytes;
+            double speed = (bytes - windowBytes) * 1e9 / (reading - windowReadingTime);
+            windowReadingTime = reading;
+            windowBytes = bytes;
+            return speed < MIN_SPEED ? "Received less than " + MIN_SPEED + " bytes per second for " + STALL_PERIOD / 1_000_000_000 + " seconds" : null;
+        }
+
+        /**
+         * Closes the body, which makes the read that is waiting for it fail.
+         */
+        private void abort(String reason) {
+            abortReason = reason;
+            WATCHED.remove(this); // even if closing the body fails
+            try {
+                close();
+            } catch (IOException ignored) { // the read fails either way
+            }
+        }
+    }
+}
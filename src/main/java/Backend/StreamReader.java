@@ -0,0 +1,78 @@
+package Backend;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * This class reads a download stream into a pooled direct buffer, so that the data can be written to the file in
+ * large blocks instead of thousands of tiny writes. The amount of data gathered before each write follows the speed
+ * of the connection: a fast connection fills the whole buffer, while a slow one writes smaller blocks more often,
+ * so that the progress of slow downloads still moves smoothly.
+ * The stream is read through a small array rather than through {@link java.nio.channels.Channels#newChannel(InputStream)},
+ * whose reads hold a monitor, which would pin the virtual thread of a slow connection to its carrier thread and hold up
+ * every other connection waiting for one.
+ */
+public class StreamReader implements Closeable {
+    private static final int MIN_READ_SIZE = 16 * 1024; // 16 KB
+    private static final long TARGET_READ_TIME = 100_000_000; // 100 ms, in nanoseconds
+    private static final int TRANSFER_SIZE = 16 * 1024; // 16 KB
+    private final InputStream source;
+    private final byte[] transfer = new byte[TRANSFER_SIZE];
+    private ByteBuffer buffer;
+    private int readSize = MIN_READ_SIZE;
+
+    public StreamReader(InputStream in) {
+        this.source = in;
+        this.buffer = BufferPool.acquire();
+    }
+
+    /**
+     * Reads at most {@code maxBytes} bytes from the stream.
+     * @return the buffer holding the data that was read, ready to be written out, or null if the stream reached its end
+     */
+    public ByteBuffer read(long maxBytes) throws IOException {
+        buffer.clear();
+        buffer.limit((int) Math.min(readSize, maxBytes));
+        long start = System.nanoTime();
+        int bytesRead = 0;
+        while (buffer.hasRemaining()) {
+            int bytes = source.read(transfer, 0, Math.min(TRANSFER_SIZE, buffer.remaining()));
+            if (bytes == -1) {
+                break;
+            }
+            buffer.put(transfer, 0, bytes);
+            bytesRead += bytes;
+        }
+        if (bytesRead == 0) {
+            return null;
+        }
+        adaptReadSize(bytesRead, System.nanoTime() - start);
+        return buffer.flip();
+    }
+
+    /**
+     * Gives the buffer returned by the last read to the caller, who becomes responsible for releasing it to the
+     * {@link BufferPool}, so that its data can be passed on without being copied. The next read fills a new buffer.
+     */
+    public ByteBuffer detachBuffer() {
+        ByteBuffer detached = buffer;
+        buffer = BufferPool.acquire();
+        return detached;
+    }
+
+    private void adaptReadSize(int bytesRead, long elapsed) {
+        long bytesInTargetTime = elapsed <= 0 ? buffer.capacity() : bytesRead * TARGET_READ_TIME / elapsed;
+        readSize = (int) Math.max(MIN_READ_SIZE, Math.min(buffer.capacity(), bytesInTargetTime));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            source.close();
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+}
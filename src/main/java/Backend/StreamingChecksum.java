@@ -0,0 +1,252 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.CRC32C;
+
+/**
+ * This class computes the checksums of a file while it is being downloaded, so that the file does not have to be
+ * read again once the download is complete.
+ * A single-stream download feeds its bytes straight into the checksums. The parts of a multithreaded download arrive
+ * out of order, so the workers only record which ranges they wrote, and the thread watching over the download keeps
+ * hashing the part of the file that is complete from the start, which is read back while it is still in the page
+ * cache. Only the parts that were already on disk when a download was resumed are read from the disk at the end.
+ * If the server sent digests of the file (Digest, Repr-Digest, Content-MD5 or x-goog-hash headers), the computed
+ * checksums are compared against them.
+ */
+public class StreamingChecksum {
+    public static final String SHA_256 = "SHA-256";
+    public static final String SHA_1 = "SHA-1";
+    public static final String MD5 = "MD5";
+    public static final String CRC32C = "CRC32C";
+    private static final MessageBroker M = Environment.getMessageBroker();
+    private final Map<String, MessageDigest> digests = new LinkedHashMap<>();
+    private final Map<String, byte[]> expectedChecksums;
+    private final TreeMap<Long, Long> writtenRanges = new TreeMap<>(); // start -> end (exclusive) of the ranges written past the hashed part
+    private CRC32C crc32c;
+    private long hashedBytes;
+    private Map<String, String> checksums;
+
+    /**
+     * @param algorithms the checksums to compute, out of SHA-256, SHA-1, MD5 and CRC32C
+     * @param headers the headers of the server response, which may contain digests to check the file against
+     */
+    public StreamingChecksum(Collection<String> algorithms, HttpHeaders headers) {
+        this.expectedChecksums = parseDigestHeaders(headers);
+        Set<String> allAlgorithms = new LinkedHashSet<>(algorithms);
+        allAlgorithms.addAll(expectedChecksums.keySet());
+        for (String algorithm : allAlgorithms) {
+            if (algorithm.equals(CRC32C)) {
+                crc32c = new CRC32C();
+                continue;
+            }
+            try {
+                digests.put(algorithm, MessageDigest.getInstance(algorithm));
+            } catch (NoSuchAlgorithmException e) {
+                M.msgLogWarning("Checksum algorithm " + algorithm + " is not supported");
+            }
+        }
+    }
+
+    /**
+     * Parses a comma separated list of checksum algorithms, as stored in the preferences.
+     */
+    public static List<String> parseAlgorithms(String algorithms) {
+        List<String> algorithmList = new ArrayList<>();
+        for (String algorithm : algorithms.split(",")) {
+            String name = normalizeAlgorithm(algorithm);
+            if (name != null) {
+                algorithmList.add(name);
+            }
+        }
+        return algorithmList;
+    }
+
+    /**
+     * Hashes the next bytes of a file that is downloaded in order.
+     */
+    public synchronized void update(ByteBuffer data) {
+        hash(data);
+    }
+
+    /**
+     * Records that a worker wrote the given range of the file, so that it gets hashed by {@link #catchUp(SegmentedFileWriter)}.
+     */
+    public synchronized void written(long position, long length) {
+        long start = Math.max(position, hashedBytes);
+        long end = position + length;
+        if (end <= start) {
+            return;
+        }
+        Map.Entry<Long, Long> previous = writtenRanges.floorEntry(start);
+        if (previous != null && previous.getValue() >= start) { // merge with the range ending where this one starts
+            start = previous.getKey();
+            end = Math.max(end, previous.getValue());
+        }
+        Long next = writtenRanges.get(end);
+        if (next != null) { // merge with the range starting where this one ends
+            writtenRanges.remove(end);
+            end = next;
+        }
+        writtenRanges.put(start, end);
+    }
+
+    /**
+     * Records the parts of a resumed download that are already on disk, so that they get hashed along with the new ones.
+     */
+    public void alreadyWritten(List<Segment> missingRanges, long totalSize) {
+        long position = 0;
+        for (Segment range : missingRanges) {
+            written(position, range.getStart() - position);
+            position = range.getEnd() + 1;
+        }
+        written(position, totalSize - position);
+    }
+
+    /**
+     * Hashes the part of the file that is complete from the start, but was not hashed yet.
+     */
+    public void catchUp(SegmentedFileWriter file) throws IOException {
+        long end;
+        synchronized (this) {
+            Map.Entry<Long, Long> first = writtenRanges.firstEntry();
+            if (first == null || first.getKey() != hashedBytes) {
+                return;
+            }
+            writtenRanges.remove(first.getKey());
+            end = first.getValue();
+        }
+        hashFromFile(file, end);
+    }
+
+    /**
+     * Hashes whatever part of the file was not hashed yet and completes the checksums.
+     * @param file the file to read the remaining parts from, or null for a download whose bytes were all passed to {@link #update(ByteBuffer)}
+     */
+    public Map<String, String> finish(SegmentedFileWriter file) throws IOException {
+        if (file != null) {
+            hashFromFile(file, file.getTotalSize());
+        }
+        synchronized (this) {
+            checksums = new LinkedHashMap<>();
+            for (Map.Entry<String, MessageDigest> digest : digests.entrySet()) {
+                checksums.put(digest.getKey(), HexFormat.of().formatHex(digest.getValue().digest()));
+            }
+            if (crc32c != null) {
+                checksums.put(CRC32C, String.format("%08x", crc32c.getValue()));
+            }
+            return checksums;
+        }
+    }
+
+    /**
+     * @return the checksums computed by {@link #finish(SegmentedFileWriter)}, or null if it was not called yet
+     */
+    public synchronized Map<String, String> getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * Reports the checksums of the file and the result of the comparison with the digests sent by the server.
+     * @return false if any of the checksums does not match the one sent by the server
+     */
+    public boolean report(String fileName) {
+        boolean matches = true;
+        for (Map.Entry<String, String> checksum : checksums.entrySet()) {
+            byte[] expected = expectedChecksums.get(checksum.getKey());
+            if (expected == null) {
+                M.msgDownloadInfo(checksum.getKey() + " of \"" + fileName + "\" : " + checksum.getValue());
+            } else if (HexFormat.of().formatHex(expected).equalsIgnoreCase(checksum.getValue())) {
+                M.msgDownloadInfo(checksum.getKey() + " of \"" + fileName + "\" : " + checksum.getValue() + " (verified against the server)");
+            } else {
+                M.msgDownloadError(checksum.getKey() + " of \"" + fileName + "\" does not match the server! Expected " + HexFormat.of().formatHex(expected) + " but got " + checksum.getValue());
+                matches = false;
+            }
+        }
+        return matches;
+    }
+
+    private void hashFromFile(SegmentedFileWriter file, long end) throws IOException {
+        ByteBuffer buffer = BufferPool.acquire();
+        try {
+            long position;
+            synchronized (this) {
+                position = hashedBytes; // only the calling thread moves the hashed part forward
+            }
+            while (position < end) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), end - position));
+                int bytes = file.read(buffer, position);
+                if (bytes <= 0) {
+                    throw new IOException("Unexpected end of file while computing the checksum");
+                }
+                buffer.flip();
+                synchronized (this) {
+                    hash(buffer);
+                }
+                position += bytes;
+            }
+        } finally {
+            BufferPool.release(buffer);
+        }
+    }
+
+    private void hash(ByteBuffer data) {
+        for (MessageDigest digest : digests.values()) {
+            digest.update(data.duplicate());
+        }
+        if (crc32c != null) {
+            crc32c.update(data.duplicate());
+        }
+        hashedBytes += data.remaining();
+    }
+
+    private static Map<String, byte[]> parseDigestHeaders(HttpHeaders headers) {
+        Map<String, byte[]> expected = new HashMap<>();
+        if (headers == null) {
+            return expected;
+        }
+        // Digest: SHA-256=base64 (RFC 3230), Repr-Digest: sha-256=:base64: (RFC 9530), x-goog-hash: crc32c=base64,md5=base64
+        for (String headerName : List.of("Digest", "Repr-Digest", "x-goog-hash")) {
+            for (String header : headers.allValues(headerName)) {
+                for (String entry : header.split(",")) {
+                    int separator = entry.indexOf('=');
+                    if (separator == -1) {
+                        continue;
+                    }
+                    String algorithm = normalizeAlgorithm(entry.substring(0, separator));
+                    byte[] value = decodeDigest(entry.substring(separator + 1).trim().replace(":", ""));
+                    if (algorithm != null && value != null) {
+                        expected.put(algorithm, value);
+                    }
+                }
+            }
+        }
+        headers.firstValue("Content-MD5").map(StreamingChecksum::decodeDigest).ifPresent(value -> expected.put(MD5, value));
+        return expected;
+    }
+
+    private static String normalizeAlgorithm(String algorithm) {
+        return switch (algorithm.trim().toLowerCase()) {
+            case "sha-256", "sha256" -> SHA_256;
+            case "sha-1", "sha1", "sha" -> SHA_1;
+            case "md5" -> MD5;
+            case "crc32c" -> CRC32C;
+            default -> null;
+        };
+    }
+
+    private static byte[] decodeDigest(String value) {
+        try {
+            return Base64.getDecoder().decode(value);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package Backend;
+
+import java.io.File;
+import java.util.Map;
+
+/**
+ * This is a data structure class for what is known about a file from its last download: the validators sent by the
+ * server (ETag and Last-Modified), its size and its checksums. It is kept in the job history, so that downloading the
+ * same link again only transfers the file if it has changed on the server since.
+ */
+public class Validators {
+    private final String eTag;
+    private final String lastModified;
+    private final long size;
+    private final Map<String, String> checksums; // algorithm -> hex digest of the downloaded file
+
+    public Validators(String eTag, String lastModified, long size, Map<String, String> checksums) {
+        this.eTag = eTag;
+        this.lastModified = lastModified;
+        this.size = size;
+        this.checksums = checksums;
+    }
+
+    public String getETag() {
+        return eTag;
+    }
+
+    public String getLastModified() {
+        return lastModified;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public Map<String, String> getChecksums() {
+        return checksums;
+    }
+
+    /**
+     * @return true if the server can be asked whether the file changed, and the file on disk is still the one that
+     * was downloaded, as far as its size tells
+     */
+    public boolean canRevalidate(File file) {
+        return (eTag != null || lastModified != null) && file.isFile() && file.length() == size;
+    }
+}
@@ -0,0 +1,167 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class takes the disk writes of a multithreaded download off the connections. Each connection hands the pooled
+ * buffer it read its data into to a bounded queue, taking a fresh buffer for its next read rather than copying the
+ * data, and a few writer threads drain the queue into the file, so that a slow disk does not stall the sockets. Once the queue
+ * is full, the connections wait for room before reading more, which lets TCP flow control slow the servers down
+ * instead of piling up data in memory.
+ * A range is only recorded in the journal and handed to the checksum once it is written, and as the journal adds up
+ * the bytes written into every block, the writes can complete in any order.
+ */
+public class WriteBehindQueue implements Closeable {
+    private static final MessageBroker M = Environment.getMessageBroker();
+    private static final int CAPACITY = 8; // buffers waiting to be written, about 8 MB
+    private static final int WRITER_COUNT = 2;
+    private static final Write END = new Write(null, -1); // tells a writer thread to stop
+    private final BlockingQueue<Write> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final List<CompletableFuture<Void>> writers = new ArrayList<>();
+    private final SegmentedFileWriter file;
+    private final DownloadJournal journal;
+    private final StreamingChecksum checksum;
+    private final FsyncPolicy fsyncPolicy;
+    private final AtomicLong unsyncedBytes = new AtomicLong();
+    private volatile IOException error;
+    private volatile boolean closed;
+
+    public WriteBehindQueue(SegmentedFileWriter file, DownloadJournal journal, StreamingChecksum checksum, FsyncPolicy fsyncPolicy) {
+        this.file = file;
+        this.journal = journal;
+        this.checksum = checksum;
+        this.fsyncPolicy = fsyncPolicy;
+        for (int i = 0; i < WRITER_COUNT; i++) {
+            writers.add(DownloadExecutor.start(this::drain));
+        }
+    }
+
+    /**
+     * Hands the remaining bytes of a pooled buffer, which belong at {@code position} in the file, to the queue, waiting
+     * for room if it is full. The queue releases the buffer once it is written, so the caller must not touch it again.
+     */
+    public void write(ByteBuffer buffer, long position) {
+        if (hasFailed()) {
+            BufferPool.release(buffer);
+            return;
+        }
+        put(new Write(buffer, position));
+    }
+
+    /**
+     * @return true if a write failed, in which case the download cannot complete and the connections should stop
+     */
+    public boolean hasFailed() {
+        return error != null;
+    }
+
+    /**
+     * Waits until everything handed to the queue is written and, if the policy asks for it, synced to the disk.
+     * @throws IOException the error of the first write that failed, if any
+     */
+    public void finish() throws IOException {
+        close();
+        if (error != null) {
+            throw error;
+        }
+        if (fsyncPolicy.syncsAtEnd()) {
+            file.sync();
+        }
+    }
+
+    /**
+     * Stops the writer threads once they have written what is in the queue. The connections must be done by then.
+     */
+    @Override
+    public void close() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        }
+        for (int i = 0; i < WRITER_COUNT; i++) {
+            put(END);
+        }
+        CompletableFuture.allOf(writers.toArray(new CompletableFuture[0])).join();
+    }
+
+    private void drain() {
+        while (true) {
+            Write write;
+            try {
+                write = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (write == END) {
+                return;
+            }
+            long end = write.position + write.buffer.remaining();
+            try {
+                if (error == null) { // after a failure the rest is thrown away, so that the connections are not left waiting for room
+                    write(write);
+                }
+            } catch (IOException e) {
+                M.msgLogError("Failed to write bytes " + write.position + "-" + (end - 1) + " of the download : " + e.getMessage());
+                error = e;
+            } finally {
+                BufferPool.release(write.buffer);
+            }
+        }
+    }
+
+    private void write(Write write) throws IOException {
+        int bytes = file.write(write.buffer, write.position);
+        checksum.written(write.position, bytes);
+        journal.markCompleted(write.position, write.position + bytes);
+        unsyncedBytes.addAndGet(bytes);
+        // the count is taken and reset in one step, so that only one writer syncs it and no bytes added by the other are lost;
+        // every byte counted was written before the sync starts
+        long unsynced = unsyncedBytes.getAndUpdate(count -> fsyncPolicy.isDue(count) ? 0 : count);
+        if (fsyncPolicy.isDue(unsynced)) {
+            file.sync();
+        }
+    }
+
+    /**
+     * Waits until there is room in the queue, which is what slows the connections down. A connection that is still
+     * running when the queue is closed, because the download ended with an error, gives up its data instead.
+     */
+    private void put(Write write) {
+        try {
+            while (!queue.offer(write, 100, TimeUnit.MILLISECONDS)) {
+                if (closed && write != END) {
+                    BufferPool.release(write.buffer);
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            BufferPool.release(write.buffer);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Write {
+        private final ByteBuffer buffer; // its remaining bytes are to be written
+        private final long position;
+
+        private Write(ByteBuffer buffer, long position) {
+            this.buffer = buffer;
+            this.position = position;
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package CLI;
 
+import Backend.ConnectionPool;
 import Backend.FileDownloader;
+import Backend.FsyncPolicy;
+import Backend.HttpTransport;
+import Backend.RateLimiter;
 import Enums.MessageType;
 import Enums.OS;
 import Preferences.AppSettings;
@@ -11,10 +15,12 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Scanner;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static Utils.DriftyConstants.*;
 import static Utils.Utility.*;
@@ -37,6 +43,9 @@ public class Main {
     private static String fileName = null;
     private static boolean batchDownloading;
     private static String batchDownloadingFile;
+    private static ConnectionPool connectionPool;
+    private static final List<String> mirrors = new ArrayList<>();
+    private static final String LIMIT_COMMAND = "limit";
 
     public static void main(String[] args) {
         logger.log(MessageType.INFO, CLI_APPLICATION_STARTED);
@@ -45,6 +54,7 @@ public class Main {
         messageBroker.msgInitInfo("Initializing environment...");
         Environment.initializeEnvironment();
         messageBroker.msgInitInfo("Environment initialized successfully!");
+        connectionPool = new ConnectionPool(AppSettings.get.connectionPoolIdleTimeout(), AppSettings.get.connectionPoolSize()); // shared by all the downloads of this session
         utility = new Utility();
         printBanner();
         String downloadsFolder;
@@ -64,6 +74,34 @@ public class Main {
                     } else if (Objects.equals(args[i], VERSION_FLAG) || (Objects.equals(args[i], VERSION_FLAG_SHORT))) {
                         System.out.println(APPLICATION_NAME + " " + VERSION_NUMBER);
                         System.exit(0);
+                    } else if ((Objects.equals(args[i], MMAP_FLAG)) || (Objects.equals(args[i], MMAP_FLAG_SHORT))) {
+                        AppSettings.set.memoryMappedOutput(args[i + 1].equalsIgnoreCase("on"));
+                        i++;
+                    } else if ((Objects.equals(args[i], COMPRESSION_FLAG)) || (Objects.equals(args[i], COMPRESSION_FLAG_SHORT))) {
+                        AppSettings.set.compressedTransfers(args[i + 1].equalsIgnoreCase("on"));
+                        i++;
+                    } else if ((Objects.equals(args[i], FSYNC_FLAG)) || (Objects.equals(args[i], FSYNC_FLAG_SHORT))) {
+                        try {
+                            AppSettings.set.fsyncPolicy(FsyncPolicy.parse(args[i + 1]).toString());
+                        } catch (NumberFormatException e) {
+                            messageBroker.msgInitError("Invalid sync policy! " + e.getMessage());
+                            System.exit(1);
+                        }
+                        i++;
+                    } else if ((Objects.equals(args[i], TIMEOUT_FLAG)) || (Objects.equals(args[i], TIMEOUT_FLAG_SHORT))) {
+                        try {
+                            HttpTransport.applyTimeouts(args[i + 1]);
+                        } catch (NumberFormatException e) {
+                            messageBroker.msgInitError("Invalid timeouts! " + e.getMessage());
+                            System.exit(1);
+                        }
+                        i++;
+                    } else if ((Objects.equals(args[i], LIMIT_RATE_FLAG)) || (Objects.equals(args[i], LIMIT_RATE_FLAG_SHORT))) {
+                        setBandwidthLimits(args[i + 1]);
+                        i++;
+                    } else if ((Objects.equals(args[i], MIRROR_FLAG)) || (Objects.equals(args[i], MIRROR_FLAG_SHORT))) {
+                        mirrors.add(args[i + 1]);
+                        i++;
                     } else if ((Objects.equals(args[i], BATCH_FLAG)) || (Objects.equals(args[i], BATCH_FLAG_SHORT))) {
                         batchDownloading = true;
                         batchDownloadingFile = args[i + 1];
@@ -98,8 +136,9 @@ public class Main {
                     renameFilenameIfRequired(false);
                     downloadsFolder = location;
                     downloadsFolder = getProperDownloadsFolder(downloadsFolder);
-                    FileDownloader downloader = new FileDownloader(link, fileName, downloadsFolder);
-                    downloader.run();
+                    FileDownloader downloader = new FileDownloader(link, fileName, downloadsFolder, connectionPool, AppSettings.get.jobHistory());
+                    mirrors.forEach(downloader::addMirror);
+                    download(downloader);
                 }
             }
             logger.log(MessageType.INFO, CLI_APPLICATION_TERMINATED);
@@ -110,6 +149,7 @@ public class Main {
                 System.out.println("Select download option :");
                 System.out.println("\t1. Batch Download (Download Multiple files)");
                 System.out.println("\t2. Single File Download (Download One file at a time)");
+                System.out.println("\t3. Bandwidth Limits (Currently " + RateLimiter.getLimits() + ")");
                 int choice = SC.nextInt();
                 if (choice == 1) {
                     batchDownloading = true;
@@ -125,6 +165,10 @@ public class Main {
                 } else if (choice == 2) {
                     batchDownloading = false;
                     break;
+                } else if (choice == 3) {
+                    System.out.print("Enter the limits in bytes per second (e.g. 2M or example.com=500K, 0 for no limit) : ");
+                    setBandwidthLimits(SC.next());
+                    SC.nextLine();
                 } else {
                     System.out.println("Invalid Input!");
                 }
@@ -148,8 +192,8 @@ public class Main {
                 messageBroker.msgFilenameInfo("Retrieving filename from link...");
                 fileName = findFilenameInLink(link);
                 renameFilenameIfRequired(true);
-                FileDownloader downloader = new FileDownloader(link, fileName, downloadsFolder);
-                downloader.run();
+                FileDownloader downloader = new FileDownloader(link, fileName, downloadsFolder, connectionPool, AppSettings.get.jobHistory());
+                download(downloader);
             }
             System.out.println(QUIT_OR_CONTINUE);
             String choice = SC.next().toLowerCase();
@@ -240,14 +284,83 @@ public class Main {
                         directory = AppSettings.get.lastDownloadFolder();
                     }
                 }
-                FileDownloader downloader = new FileDownloader(link, fileName, directory);
-                downloader.run();
+                FileDownloader downloader = new FileDownloader(link, fileName, directory, connectionPool, AppSettings.get.jobHistory());
+                if (data.containsKey("rateLimits") && i < data.get("rateLimits").size() && !data.get("rateLimits").get(i).isEmpty()) {
+                    try {
+                        downloader.setRateLimit(RateLimiter.parseRate(data.get("rateLimits").get(i)));
+                    } catch (NumberFormatException e) {
+                        messageBroker.msgBatchError("Invalid rate limit for link " + (i + 1) + " ! " + e.getMessage());
+                    }
+                }
+                if (data.containsKey("mirrors") && i < data.get("mirrors").size() && !data.get("mirrors").get(i).isBlank()) {
+                    for (String mirror : data.get("mirrors").get(i).trim().split("\\s+")) {
+                        downloader.addMirror(mirror);
+                    }
+                }
+                download(downloader);
             }
         } catch (FileNotFoundException e) {
             messageBroker.msgDownloadError("YAML Data file (" + batchDownloadingFile + ") not found ! " + e.getMessage());
         }
     }
 
+    /**
+     * Runs the download while watching the console for a line such as {@code limit 2M} or {@code limit example.com=500K},
+     * which changes the bandwidth limits of the running download in the same way as option 3 of the menu. The console
+     * is only read once a line is waiting, so that nothing typed for the prompts after the download is taken.
+     */
+    private static void download(FileDownloader downloader) {
+        if (System.console() == null) { // piped input holds the answers to the prompts, not commands
+            downloader.run();
+            return;
+        }
+        messageBroker.msgInitInfo("Type \"" + LIMIT_COMMAND + " <rate>\" (e.g. " + LIMIT_COMMAND + " 2M or " + LIMIT_COMMAND + " example.com=500K) and press Enter to change the bandwidth limits while downloading");
+        AtomicBoolean downloading = new AtomicBoolean(true);
+        Thread commands = new Thread(() -> {
+            try {
+                while (downloading.get()) {
+                    if (System.in.available() == 0) {
+                        Thread.sleep(200);
+                        continue;
+                    }
+                    String command = SC.nextLine().trim();
+                    if (command.toLowerCase().startsWith(LIMIT_COMMAND + " ")) {
+                        setBandwidthLimits(command.substring(LIMIT_COMMAND.length()).trim());
+                    } else if (!command.isEmpty()) {
+                        messageBroker.msgInitError("Unknown command! Type \"" + LIMIT_COMMAND + " <rate>\" to change the bandwidth limits.");
+                    }
+                }
+            } catch (IOException e) {
+                messageBroker.msgLogError("Failed to read commands from the console : " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "Limit commands");
+        commands.setDaemon(true);
+        commands.start();
+        try {
+            downloader.run();
+        } finally {
+            downloading.set(false);
+            commands.interrupt();
+            try {
+                commands.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void setBandwidthLimits(String limits) {
+        try {
+            RateLimiter.applyLimits(limits);
+            AppSettings.set.bandwidthLimits(RateLimiter.getLimits());
+            messageBroker.msgInitInfo("Bandwidth limits set to " + RateLimiter.getLimits());
+        } catch (NumberFormatException e) {
+            messageBroker.msgInitError("Invalid bandwidth limit! " + e.getMessage());
+        }
+    }
+
     private static void renameFilenameIfRequired(boolean removeInputBufferFirst) { // Asks the user if the detected filename is to be used or not. If not, then the user is asked to enter a filename.
         if ((fileName == null || (fileName.isEmpty())) && (!isYoutubeURL && !isInstagramLink)) {
             System.out.print(ENTER_FILE_NAME_WITH_EXTENSION);
@@ -306,6 +419,12 @@ public class Main {
         System.out.println("--batch      -b            N/A                      The path to the yaml/yml file containing the links and other arguments.");
         System.out.println("--location   -l            Downloads                The location on your computer where content downloaded using Drifty are placed.");
         System.out.println("--name       -n            Source                   Filename of the downloaded file.");
+        System.out.println("--mmap       -m            off                      Writes downloads through memory-mapped windows (on/off, remembered for later runs).");
+        System.out.println("--compression -c           on                       Asks the server to compress the file on the way and decodes it while saving (on/off, remembered for later runs).");
+        System.out.println("--fsync      -f            never                    Forces downloads onto the disk: never, at the end, or every given amount, e.g. 64M (remembered for later runs).");
+        System.out.println("--timeout    -t            30,60                    Seconds to wait for a connection and then for data, e.g. 10,30, before a stalled connection is replaced (remembered for later runs).");
+        System.out.println("--limit-rate -r            0 (unlimited)            Limits the bandwidth in bytes per second, e.g. 2M, or for one host, e.g. example.com=500K (remembered for later runs). Type \"limit <rate>\" while downloading to change it.");
+        System.out.println("--mirror     -M            N/A                      Another link to the same file, downloaded from at the same time (can be given several times).");
         System.out.println("--help       -h            N/A                      Provides concise information for Drifty CLI.");
         System.out.println("--version    -v            Current Version          Displays version number of Drifty.");
         System.out.println("\033[97;1mSee full documentation at https://github.com/SaptarshiSarkar12/Drifty#readme" + ANSI_RESET);
@@ -1,9 +1,12 @@
 package Enums;
 import java.text.DecimalFormat;
+import java.text.DecimalFormatSymbols;
 
 public enum UnitConverter {
     B, KB, MB, GB, TB;
 
+    private static final DecimalFormatSymbols SYMBOLS = DecimalFormatSymbols.getInstance(); // the symbols DecimalFormat uses by default
+
     public static double getValue(long bytes, UnitConverter unit) {
         double temp = (double) bytes;
         return switch(unit) {
@@ -52,4 +55,71 @@ public enum UnitConverter {
         double converted = (double) bytes;
         return format(converted, decimalPlaces);
     }
+
+    /**
+     * Appends the same text as {@link #format(double, int)} to the builder, without creating any objects, so that it
+     * can be used for output that is redrawn several times per second.
+     */
+    public static void append(StringBuilder builder, double bytes, int decimalPlaces) {
+        UnitConverter unit = findUnit(bytes);
+        appendFixed(builder, getValue(bytes, unit), decimalPlaces, false);
+        builder.append(' ').append(unit.name());
+    }
+
+    /**
+     * Appends a number with the given number of decimal places (1 or 2) to the builder, without creating any objects.
+     * It is rounded half to even like {@link DecimalFormat} does, so that it gives the same digits as {@link #format(double, int)}.
+     * @param leadingZero whether to write the zero before the decimal point of numbers below 1, which {@link #format(double, int)} leaves out
+     */
+    public static void appendFixed(StringBuilder builder, double value, int decimalPlaces, boolean leadingZero) {
+        if (Double.isNaN(value)) {
+            builder.append(SYMBOLS.getNaN());
+            return;
+        }
+        if (Math.copySign(1.0, value) < 0) { // like DecimalFormat, negative numbers that round to zero keep their sign
+            builder.append(SYMBOLS.getMinusSign());
+            value = -value;
+        }
+        if (Double.isInfinite(value)) {
+            builder.append(SYMBOLS.getInfinity());
+            return;
+        }
+        long scale = decimalPlaces == 2 ? 100 : 10;
+        long scaled = roundHalfEven(value * scale, Math.fma(value, scale, -(value * scale)));
+        long whole = scaled / scale;
+        long fraction = scaled % scale;
+        if (whole != 0 || leadingZero) {
+            builder.append(whole);
+        }
+        builder.append(SYMBOLS.getDecimalSeparator());
+        if (decimalPlaces == 2 && fraction < 10) {
+            builder.append('0');
+        }
+        builder.append(fraction);
+    }
+
+    /**
+     * Rounds a product the way DecimalFormat rounds the exact value it stands for, which is a tie only if the product
+     * is halfway between two numbers and nothing was lost when it was computed.
+     * @param error the part of the exact product that was rounded away when it was computed
+     */
+    private static long roundHalfEven(double product, double error) {
+        double floor = Math.floor(product);
+        double remainder = product - floor;
+        long rounded = (long) floor;
+        if (remainder > 0.5 || remainder == 0.5 && (error > 0 || error == 0 && rounded % 2 != 0)) {
+            rounded++;
+        }
+        return rounded;
+    }
+
+    private static double getValue(double bytes, UnitConverter unit) {
+        return switch (unit) {
+            case B -> bytes;
+            case KB -> bytes / 1024;
+            case MB -> bytes / 1024 / 1024;
+            case GB -> bytes / 1024 / 1024 / 1024;
+            case TB -> bytes / 1024 / 1024 / 1024 / 1024;
+        };
+    }
 }
\ No newline at end of file
@@ -1,36 +1,35 @@
 package GUI.Forms;
 
-import Backend.DownloadMetrics;
+import Backend.BandwidthLimit;
+import Backend.BatchProgress;
+import Backend.ConnectionPool;
+import Backend.DownloadEngine;
+import Backend.DownloadProgress;
+import Backend.ProgressListener;
 import Enums.LinkType;
 import Enums.Program;
 import Enums.UnitConverter;
 import GUI.Support.Job;
-import GUI.Support.SplitDownloadMetrics;
+import Preferences.AppSettings;
 import Utils.Environment;
 import Utils.MessageBroker;
 import Utils.Utility;
-import javafx.application.Platform;
-import javafx.beans.property.DoubleProperty;
-import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
 import javafx.concurrent.Task;
 
 import java.io.*;
 import java.net.*;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.util.LinkedList;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Objects;
-import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import static Utils.DriftyConstants.*;
 
-public class DownloadFile extends Task<Integer> {
+public class DownloadFile extends Task<Integer> implements ProgressListener {
     private static final MessageBroker M = Environment.getMessageBroker();
     private final String YT_DLP = Program.get(Program.YT_DLP);
     private final StringProperty progressProperty = new SimpleStringProperty();
@@ -41,28 +40,22 @@ public class DownloadFile extends Task<Integer> {
     private int exitCode = 1;
     private boolean done = false;
     private final Job job;
-    private final AtomicLong totalTransferred = new AtomicLong();
-    private final AtomicLong totalSpeedValue = new AtomicLong();
+    private final ConnectionPool connectionPool;
+    private final BandwidthLimit bandwidthLimit;
+    private final BatchProgress batchProgress;
+    private DownloadProgress downloadProgress;
+    private long lastMessageTime;
 
-    public DownloadFile(Job job,
-                        StringProperty linkProperty, StringProperty dirProperty, StringProperty filenameProperty,
-                        StringProperty downloadMessage,
-                        IntegerProperty transferSpeedProperty,
-                        DoubleProperty progressProperty) {
+    public DownloadFile(Job job, ConnectionPool connectionPool, BatchProgress batchProgress) {
         this.job = job;
+        this.connectionPool = connectionPool;
+        this.batchProgress = batchProgress;
         this.link = job.getLink();
         this.filename = Utility.cleanFilename(job.getFilename());
         this.dir = job.getDir();
         this.type = LinkType.getLinkType(link);
+        this.bandwidthLimit = BandwidthLimit.forLink(link, job.getRateLimit());
         setProperties();
-        Platform.runLater(() -> {
-            linkProperty.setValue(link);
-            filenameProperty.setValue(filename);
-            dirProperty.setValue(dir);
-            progressProperty.bind(this.progressProperty());
-            downloadMessage.bind(this.messageProperty());
-            transferSpeedProperty.bind(this.valueProperty());
-        });
     }
 
     @Override
@@ -71,7 +64,7 @@ public class DownloadFile extends Task<Integer> {
         sendInfoMessage(String.format(TRYING_TO_DOWNLOAD_F, filename));
         switch (type) {
             case YOUTUBE, INSTAGRAM -> downloadYoutubeOrInstagram();
-            case OTHER -> splitDecision();
+            case OTHER -> downloadFile();
         }
         updateProgress(0.0, 1.0);
         done = true;
@@ -79,7 +72,8 @@ public class DownloadFile extends Task<Integer> {
     }
 
     private void downloadYoutubeOrInstagram() {
-        String[] fullCommand = new String[]{YT_DLP, "--quiet", "--progress", "-P", dir, link, "-o", filename};
+        List<String> fullCommand = new ArrayList<>(List.of(YT_DLP, "--quiet", "--progress", "-P", dir, link, "-o", filename));
+        fullCommand.addAll(bandwidthLimit.getYtDlpArguments());
         ProcessBuilder processBuilder = new ProcessBuilder(fullCommand);
         sendInfoMessage(String.format(DOWNLOADING_F, filename));
         Process process = null;
@@ -116,143 +110,46 @@ public class DownloadFile extends Task<Integer> {
         sendFinalMessage("");
     }
 
-    private void splitDecision() {
-        long fileSize;
+    private void downloadFile() {
+        String message = "";
+        URL url;
         try {
-            URL url = new URI(link).toURL();
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.connect();
-            fileSize = con.getHeaderFieldLong("Content-Length", -1);
-        } catch (MalformedURLException | URISyntaxException e) {
+            url = new URI(link).toURL();
+        } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
             M.msgLinkError("Invalid Link !");
             exitCode = 1;
             return;
+        }
+        // all the requests for this file share the connection(s) kept open for its host
+        DownloadEngine engine = new DownloadEngine(connectionPool.get(url), url, job.getFile(), bandwidthLimit, this);
+        for (String mirror : job.getMirrors()) {
+            try {
+                URL mirrorUrl = new URI(mirror).toURL();
+                engine.addMirror(connectionPool.get(mirrorUrl), mirrorUrl);
+            } catch (MalformedURLException | URISyntaxException | IllegalArgumentException e) {
+                M.msgLinkError("Invalid mirror link " + mirror + " !");
+            }
+        }
+        engine.setPreviousValidators(AppSettings.get.jobHistory().getValidators(link, job.getFile()));
+        try {
+            engine.probe();
         } catch (IOException e) {
             M.msgDownloadError(String.format(FAILED_CONNECTION_F, link));
             exitCode = 1;
             return;
         }
-        if (UnitConverter.getValue(fileSize, UnitConverter.MB) > 50) {
-            splitDownload();
-        } else {
-            downloadFile();
-        }
-    }
-
-    private Runnable split(SplitDownloadMetrics sdm) {
-        return () -> {
-            InputStream in = null;
-            HttpURLConnection con;
-            FileOutputStream fos = null;
-            try {
-                URL url = sdm.getUrl();
-                long start = sdm.getStart();
-                long end = sdm.getEnd();
-                fos = sdm.getFileOutputStream();
-                con = (HttpURLConnection) url.openConnection();
-                con.setRequestProperty("Range", "bytes=" + start + "-" + end); // stating how many bytes of data to be sent by the server.
-                con.connect();
-                in = con.getInputStream();
-                byte[] buffer = new byte[1024];
-                int bytesRead;
-                while ((bytesRead = in.read(buffer)) != -1) {
-                    fos.write(buffer, 0, bytesRead);
-                    totalTransferred.addAndGet(bytesRead);
-                    totalSpeedValue.addAndGet(bytesRead);
-                    if (sdm.stop()) {
-                        sdm.setFailed();
-                        break;
-                    }
-                }
-                sdm.setSuccess();
-            } catch (IOException ignored) {
-                sdm.setFailed();
-            } finally {
-                try {
-                    Objects.requireNonNull(fos).close();
-                    Objects.requireNonNull(in).close();
-                } catch (IOException ignored) {
-                }
-            }
-        };
-    }
-
-    private void splitDownload() {
-        String message = "";
-        URL url = null;
-        String path = job.getFile().getAbsolutePath();
         try {
-            int numParts = new DownloadMetrics().getThreadCount();
-            url = new URI(link).toURL();
-            HttpURLConnection con = (HttpURLConnection) url.openConnection();
-            con.connect();
-            long fileSize = con.getHeaderFieldLong("Content-Length", -1);
-            long partSize = fileSize / numParts;
-
-            LinkedList<SplitDownloadMetrics> list = new LinkedList<>();
-            for (int x = 0; x < numParts; x++) {
-                long startByte = (x == 0) ? 0 : (x * partSize) + 1;
-                long endByte = ((numParts - 1) == x) ? fileSize : ((x * partSize) + partSize);
-                SplitDownloadMetrics sdm = new SplitDownloadMetrics(x, startByte, endByte, filename, url);
-                list.addLast(sdm);
-                new Thread(split(sdm)).start();
-            }
-            String totalSize = UnitConverter.format(fileSize, 2);
-            boolean loop = true;
-            boolean stopThreads = false;
-            long start = System.currentTimeMillis();
-            long end;
-            while (loop) {
-                boolean allDone = true;
-                for (SplitDownloadMetrics sdm : list) {
-                    if (sdm.failed())
-                        stopThreads = true;
-                    if (sdm.running())
-                        allDone = false;
-                }
-                if (stopThreads) {
-                    for (SplitDownloadMetrics sdm : list) {
-                        sdm.setStop();
-                    }
-                }
-                double progress = (double) (totalTransferred.get()) / fileSize;
-                updateProgress(progress, 1.0);
-                end = System.currentTimeMillis();
-                double seconds = (end - start) / 1000.0;
-                if (seconds >= 1.5) {
-                    start = end;
-                    long totalBytes = totalTransferred.get();
-                    String totalDownloaded = UnitConverter.format(totalBytes, 2);
-                    double bitsTransferred = (double) totalSpeedValue.get() / seconds;
-                    String msg = "Downloading " + totalSize + " at " + UnitConverter.format(bitsTransferred, 2) + "/s (Total: " + totalDownloaded + ")";
-                    updateMessage(msg);
-                    totalSpeedValue.set(0);
-                }
-                loop = !allDone;
-            }
-            updateProgress(0.0, 1.0);
-            updateMessage("Merging Files");
-            String msg = "Saving file to download folder .";
-            FileOutputStream fos = new FileOutputStream(job.getFile());
-            long position = 0;
-            for (int i = 0; i < numParts; i++) {
-                updateMessage(msg);
-                File f = list.get(i).getFile();
-                FileInputStream fs = new FileInputStream(f);
-                ReadableByteChannel rbs = Channels.newChannel(fs);
-                fos.getChannel().transferFrom(rbs, position, f.length());
-                position += f.length();
-                msg = msg + ".";
+            if (engine.isNotModified()) {
+                message = String.format(NOT_MODIFIED_F, filename);
+            } else {
+                sendInfoMessage(String.format(DOWNLOADING_F, filename));
             }
-            fos.close();
-            exitCode = 0;
-        } catch (MalformedURLException | URISyntaxException e) {
-            M.msgLinkError(INVALID_LINK);
-            exitCode = 1;
+            exitCode = engine.download() ? 0 : 1;
+            job.setValidators(engine.getValidators());
         } catch (SecurityException e) {
-            message = String.format(WRITE_ACCESS_DENIED_F, path);
+            message = String.format(WRITE_ACCESS_DENIED_F, job.getFile().getAbsolutePath());
             exitCode = 1;
-        } catch (FileNotFoundException e) {
+        } catch (FileNotFoundException | NoSuchFileException e) {
             message = FILE_NOT_FOUND;
             exitCode = 1;
         } catch (IOException e) {
@@ -265,69 +162,42 @@ public class DownloadFile extends Task<Integer> {
         sendFinalMessage(message);
     }
 
-    private void downloadFile() {
-        String message = "";
-        Path path = Paths.get(dir, filename);
-        URL url = null;
-        FileOutputStream out = null;
-        InputStream in = null;
-        try {
-            url = new URI(link).toURL();
-            URLConnection con = url.openConnection();
-            con.connect();
+    @Override
+    public void onStart(DownloadProgress progress) {
+        downloadProgress = progress;
+        batchProgress.add(progress);
+        lastMessageTime = System.currentTimeMillis();
+    }
 
-            long fileLength = con.getHeaderFieldLong("Content-Length", -1);
-            sendInfoMessage(String.format(DOWNLOADING_F, filename));
-            String totalSize = UnitConverter.format(fileLength, 2);
-            in = con.getInputStream();
-            out = new FileOutputStream(path.toFile());
-            byte[] buffer = new byte[1024];
-            int bytesRead;
-            long totalBytesRead = 0;
-            long start = System.currentTimeMillis();
-            long end;
-            double bytesInTime = 0.0;
-            while ((bytesRead = in.read(buffer)) != -1) {
-                out.write(buffer, 0, bytesRead);
-                totalBytesRead += bytesRead;
-                double progressValue = ((double) totalBytesRead / fileLength);
-                updateProgress(progressValue, 1.0);
-                bytesInTime += bytesRead;
-                end = System.currentTimeMillis();
-                double seconds = (end - start) / 1000.0;
-                if (seconds >= 1.5) {
-                    start = end;
-                    String totalDownloaded = UnitConverter.format(totalBytesRead, 2);
-                    double bitsTransferred = bytesInTime / 10 / seconds;
-                    String msg = "Downloading " + totalSize + " at " + UnitConverter.format(bitsTransferred * 100, 2) + "/s (Total: " + totalDownloaded + ")";
-                    updateMessage(msg);
-                    bytesInTime = 0;
-                }
-            }
-            exitCode = 0;
-        } catch (MalformedURLException | URISyntaxException e) {
-            M.msgLinkError(INVALID_LINK);
-            exitCode = 1;
-        } catch (SecurityException e) {
-            message = String.format(WRITE_ACCESS_DENIED_F, path);
-            exitCode = 1;
-        } catch (FileNotFoundException e) {
-            message = FILE_NOT_FOUND;
-            exitCode = 1;
-        } catch (IOException e) {
-            message = String.format(FAILED_CONNECTION_F, url);
-            exitCode = 1;
-        } catch (NullPointerException e) {
-            message = FAILED_READING_STREAM;
-            exitCode = 1;
-        } finally {
-            try {
-                Objects.requireNonNull(out).close();
-                in.close();
-            } catch (IOException ignored) {
+    @Override
+    public void onProgress(DownloadProgress progress) {
+        long totalSize = progress.getTotalSize();
+        long downloadedBytes = progress.getDownloadedBytes();
+        if (totalSize > 0) {
+            updateProgress((double) downloadedBytes / totalSize, 1.0);
+        } else { // the server did not send the size, so the bar can only show that the download is running
+            updateProgress(-1, 1.0);
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastMessageTime >= 1500) {
+            lastMessageTime = now;
+            String msg = (totalSize > 0 ? "Downloading " + UnitConverter.format(totalSize, 2) : "Downloading") + " at " + UnitConverter.format(progress.getSpeed(), 2) + "/s (Total: " + UnitConverter.format(downloadedBytes, 2) + ")";
+            long secondsLeft = progress.getSecondsLeft();
+            if (secondsLeft >= 0) {
+                msg += String.format(" ETA %02d:%02d:%02d", secondsLeft / 3600, secondsLeft / 60 % 60, secondsLeft % 60);
             }
+            updateMessage(msg);
+        }
+    }
+
+    @Override
+    public void onFinish(boolean complete) {
+        if (complete) {
+            updateProgress(1.0, 1.0);
+        }
+        if (downloadProgress != null) {
+            batchProgress.remove(downloadProgress);
         }
-        sendFinalMessage(message);
     }
 
     private static final String regex1 = "([0-9.]+)%";
@@ -1,5 +1,8 @@
 package GUI.Forms;
 
+import Backend.BatchProgress;
+import Backend.ConnectionPool;
+import Backend.DownloadExecutor;
 import Enums.*;
 import GUI.Support.Folders;
 import GUI.Support.Job;
@@ -13,9 +16,7 @@ import Utils.Utility;
 import javafx.application.Platform;
 import javafx.beans.binding.BooleanBinding;
 import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleBooleanProperty;
-import javafx.beans.property.SimpleIntegerProperty;
 import javafx.concurrent.Task;
 import javafx.concurrent.Worker;
 import javafx.geometry.Insets;
@@ -55,9 +56,9 @@ public class GUI_Logic {
     private static final BooleanProperty processingBatch = new SimpleBooleanProperty(false);
     private static final BooleanProperty updatingBatch = new SimpleBooleanProperty(false);
     private static final BooleanProperty verifyingLinks = new SimpleBooleanProperty(false);
+    private static final Map<Job, DownloadFile> runningDownloads = new ConcurrentHashMap<>(); // job of the running batch -> its download
+    private static final long BATCH_UPDATE_INTERVAL = 500; // milliseconds
     private final String nl = System.lineSeparator();
-    private int speedValueUpdateCount = 0;
-    private int speedValue = 0;
     private Folders folders;
     private Job selectedJob;
 
@@ -77,6 +78,20 @@ public class GUI_Logic {
         setControlActions();
         form.tfLink.requestFocus();
         commitJobListToListView();
+        resumeInterruptedDownloads();
+    }
+
+    /**
+     * Continues the jobs of the batch whose download was interrupted, leaving the other jobs for the user to start.
+     */
+    private void resumeInterruptedDownloads() {
+        if (getJobs().notNull()) {
+            List<Job> resumableJobs = getJobs().jobList().stream().filter(Job::isResumable).toList();
+            if (!resumableJobs.isEmpty()) {
+                M.msgBatchInfo("Resuming " + resumableJobs.size() + " interrupted download(s) ...");
+                DownloadExecutor.start(batchDownloader(resumableJobs));
+            }
+        }
     }
 
     private void setControlProperties() {
@@ -140,8 +155,11 @@ public class GUI_Logic {
                     filename = renameFile(filename, dir);
                 }
             }
+            Job job = new Job(link, dir, filename, selectedJob.repeatOK());
+            job.setRateLimit(selectedJob.getRateLimit());
+            job.setMirrors(selectedJob.getMirrors());
             removeJobFromList(selectedJob);
-            addJob(new Job(link, dir, filename, selectedJob.repeatOK()));
+            addJob(job);
             clearLink();
             clearFilename();
             updatingBatch.setValue(false);
@@ -153,7 +171,7 @@ public class GUI_Logic {
                 clearLink();
                 clearFilename();
                 clearFilenameOutput();
-                new Thread(batchDownloader()).start();
+                DownloadExecutor.start(batchDownloader(getJobs().notNull() ? new ArrayList<>(getJobs().jobList()) : List.of()));
             }
         }).start());
         form.tfDir.setOnAction(e -> updateBatch());
@@ -201,11 +219,7 @@ public class GUI_Logic {
                 }
                 verifyingLinks.setValue(true);
                 for (String link : links) {
-                    Thread verify = new Thread(verifyLink(link));
-                    verify.start();
-                    while (!verify.getState().equals(Thread.State.TERMINATED)) {
-                        sleep(500);
-                    }
+                    DownloadExecutor.start(verifyLink(link)).join();
                 }
                 verifyingLinks.setValue(false);
                 clearLink();
@@ -258,6 +272,7 @@ public class GUI_Logic {
                         if (!folder.isEmpty()) {
                             message = intro + "And the file exists in this download folder:" + nl + folder + nl.repeat(2) +
                                     "If you wish to download it again, it will be given the name shown below, or you can change it as you wish." + nl.repeat(2) +
+                                    "If you keep the original filename, the file is only downloaded again if it has changed since." + nl.repeat(2) +
                                     "YES will add the job to the list with new filename. NO will do nothing.";
                         }
                         else {
@@ -271,11 +286,7 @@ public class GUI_Logic {
                         }
                     }
                     else if (Utility.isExtractableLink(link)) {
-                        Thread getNames = new Thread(getFilenames(link));
-                        getNames.start();
-                        while (!getNames.getState().equals(Thread.State.TERMINATED)) {
-                            sleep(150);
-                        }
+                        DownloadExecutor.start(getFilenames(link)).join();
                     }
                     else {
                         addJob(new Job(link, getDir()));
@@ -335,43 +346,50 @@ public class GUI_Logic {
         };
     }
 
-    private Runnable batchDownloader() {
+    /**
+     * @param jobs the jobs of the batch to download
+     */
+    private Runnable batchDownloader(List<Job> jobs) {
         return () -> {
             processingBatch.setValue(true);
             updatingBatch.setValue(false);
             form.lblDownloadInfo.setTextFill(GREEN);
-            IntegerProperty speedValueProperty = new SimpleIntegerProperty();
-            speedValueProperty.addListener(((observable, oldValue, newValue) -> {
-                if (!oldValue.equals(newValue)) {
-                    speedValue += (int) newValue;
-                    speedValueUpdateCount++;
-                    if (speedValueUpdateCount == 5) {
-                        int speed = speedValue / 5;
-                        speedValueUpdateCount = 0;
-                        speedValue = 0;
-                        setFilenameOutput(GREEN,speed + " /s");
+            if (!jobs.isEmpty()) {
+                LinkedList<Job> pendingJobs = new LinkedList<>(jobs);
+                BatchProgress batchProgress = new BatchProgress(pendingJobs.size());
+                Map<Job, CompletableFuture<Void>> runningJobs = new HashMap<>();
+                ConnectionPool connectionPool = new ConnectionPool(AppSettings.get.connectionPoolIdleTimeout(), AppSettings.get.connectionPoolSize()); // keeps the connections warm from one job to the next
+                Platform.runLater(() -> {
+                    form.lblDownloadInfo.textProperty().unbind();
+                    form.pBar.progressProperty().unbind();
+                });
+                while (!pendingJobs.isEmpty() || !runningJobs.isEmpty()) {
+                    // the setting is read every round, so that changing it also applies to the batch that is running
+                    int concurrentJobs = Math.max(1, AppSettings.get.concurrentJobs());
+                    while (!pendingJobs.isEmpty() && runningJobs.size() < concurrentJobs) {
+                        Job job = pendingJobs.removeFirst();
+                        M.msgBatchInfo("Processing file " + (batchProgress.getTotalJobs() - pendingJobs.size()) + " of " + batchProgress.getTotalJobs() + ": " + job);
+                        DownloadFile downloadFile = new DownloadFile(job, connectionPool, batchProgress);
+                        runningDownloads.put(job, downloadFile);
+                        runningJobs.put(job, DownloadExecutor.transfer(downloadFile));
                     }
-                }
-            }));
-            if (getJobs().notNull() && getJobs().isNotEmpty()) {
-                final int totalFiles = getJobs().jobList().size();
-                int fileCount = 0;
-                LinkedList<Job> tempJobList = new LinkedList<>(getJobs().jobList());
-                for (Job job : tempJobList) {
-                    fileCount++;
-                    M.msgBatchInfo("Processing file " + fileCount + " of " + totalFiles + ": " + job);
-                    DownloadFile downloadFile = new DownloadFile(job, form.tfLink.textProperty(), form.tfDir.textProperty(), form.tfFilename.textProperty(), form.lblDownloadInfo.textProperty(), speedValueProperty, form.pBar.progressProperty());
-                    try (ExecutorService executor = Executors.newSingleThreadExecutor()) {
-                        executor.submit(downloadFile);
-                        while (downloadFile.notDone()) {
-                            sleep(500);
-                        }
-                        int exitCode = downloadFile.getExitCode();
-                        if (exitCode == 0) { //Success
-                            removeJobFromList(job);
-                            getHistory().addJob(job);
+                    DownloadExecutor.awaitAll(runningJobs.values(), BATCH_UPDATE_INTERVAL);
+                    // the jobs are removed from the batch here, one at a time, because every change rewrites the saved batch
+                    Iterator<Map.Entry<Job, CompletableFuture<Void>>> iterator = runningJobs.entrySet().iterator();
+                    while (iterator.hasNext()) {
+                        Map.Entry<Job, CompletableFuture<Void>> entry = iterator.next();
+                        if (entry.getValue().isDone()) {
+                            iterator.remove();
+                            Job job = entry.getKey();
+                            DownloadFile downloadFile = runningDownloads.remove(job);
+                            batchProgress.jobFinished();
+                            if (downloadFile != null && downloadFile.getExitCode() == 0) { //Success
+                                removeJobFromList(job);
+                                getHistory().addJob(job);
+                            }
                         }
                     }
+                    showBatchProgress(batchProgress);
                 }
             }
             clearLink();
@@ -382,14 +400,38 @@ public class GUI_Logic {
         };
     }
 
+    private void showBatchProgress(BatchProgress batchProgress) {
+        String message = "Downloading " + batchProgress.getRunningJobs() + " of " + (batchProgress.getTotalJobs() - batchProgress.getFinishedJobs()) + " remaining files at " + UnitConverter.format(batchProgress.getSpeed(), 2) + "/s (Total: " + UnitConverter.format(batchProgress.getTransferredBytes(), 2) + ")";
+        long secondsLeft = batchProgress.getSecondsLeft();
+        if (secondsLeft >= 0) {
+            message += String.format(" ETA %02d:%02d:%02d", secondsLeft / 3600, secondsLeft / 60 % 60, secondsLeft % 60);
+        }
+        String batchMessage = message;
+        double fractionDone = batchProgress.getFractionDone();
+        Platform.runLater(() -> {
+            form.lblDownloadInfo.setText(batchMessage);
+            form.pBar.setProgress(fractionDone);
+            form.listView.refresh();
+        });
+    }
+
+    /**
+     * @return the download of the batch that is running for the job, or null if the job is not being downloaded
+     */
+    static DownloadFile getRunningDownload(Job job) {
+        // the list shows copies of the jobs read back from the saved batch, so they are matched by link and file
+        for (Map.Entry<Job, DownloadFile> runningDownload : runningDownloads.entrySet()) {
+            if (runningDownload.getKey().matches(job)) {
+                return runningDownload.getValue();
+            }
+        }
+        return null;
+    }
+
     private String fileExists(String filename) {
         for (String folder : AppSettings.get.folders().getFolders()) {
             CheckFile checkFile = new CheckFile(folder, filename);
-            Thread thread = new Thread(checkFile);
-            thread.start();
-            while (!thread.getState().equals(Thread.State.TERMINATED)) {
-                sleep(100);
-            }
+            DownloadExecutor.start(checkFile).join();
             if (checkFile.fileFound())
                 return folder;
         }
@@ -430,6 +472,8 @@ public class GUI_Logic {
         updatingBatch.setValue(false);
         if (selectedJob != null) {
             Job job = new Job(getLink(), getDir(), getFilename(), selectedJob.repeatOK());
+            job.setRateLimit(selectedJob.getRateLimit());
+            job.setMirrors(selectedJob.getMirrors());
             removeJobFromList(selectedJob);
             addJob(job);
         }
@@ -454,6 +498,7 @@ public class GUI_Logic {
         String pastJobNoFile = "You have downloaded %s in the past, but the file does not exist in your download folder." + nl.repeat(2) + " Click Yes if you still wish to download this file. Otherwise, click No.";
         String pastJobFileExists = "You have downloaded %s in the past, and the file exists in your download folder." + nl.repeat(2) +
                 "It will be renamed as shown here, or you may change the filename to your liking." + nl.repeat(2) +
+                "If you keep the original filename, the file is only downloaded again if it has changed since." + nl.repeat(2) +
                 "Clicking Yes will commit the job with the shown filename, while clicking No will not add this file to the job list.";
         String fileExistsString = "This file:" + nl.repeat(2) + "%s" + nl.repeat(2) + "Exists in in the download folder." + nl.repeat(2) +
                 "It will be renamed as shown here, or you may change the filename to your liking." + nl.repeat(2) +
@@ -518,6 +563,7 @@ public class GUI_Logic {
     private ContextMenu getListMenu() {
         MenuItem miDel = new MenuItem("Delete");
         MenuItem miClear = new MenuItem("Clear");
+        MenuItem miMirrors = new MenuItem("Mirrors...");
         MenuItem miInfo = new MenuItem("Information");
         SeparatorMenuItem separator = new SeparatorMenuItem();
         miDel.setOnAction(e -> {
@@ -537,8 +583,32 @@ public class GUI_Logic {
             M.msgFilenameInfo("");
             M.msgDirInfo("");
         });
+        miMirrors.setOnAction(e -> {
+            Job job = form.listView.getSelectionModel().getSelectedItem();
+            if (job != null) {
+                TextInputDialog dialog = new TextInputDialog(String.join(" ", job.getMirrors()));
+                dialog.setTitle("Mirrors");
+                dialog.setHeaderText("Other links to " + job.getFilename() + ", separated by spaces." + nl + "The file is downloaded from all of them at once if they serve the same file.");
+                dialog.showAndWait().ifPresent(links -> {
+                    List<String> mirrors = new ArrayList<>();
+                    for (String mirror : links.trim().split("\\s+")) {
+                        if (mirror.isEmpty()) {
+                            continue;
+                        }
+                        if (Utility.isURL(mirror)) {
+                            mirrors.add(mirror);
+                        } else {
+                            M.msgLinkError("Invalid mirror link " + mirror + " !");
+                        }
+                    }
+                    job.setMirrors(mirrors);
+                    getJobs().remove(job);
+                    addJob(job);
+                });
+            }
+        });
         miInfo.setOnAction(e -> help());
-        return new ContextMenu(miDel, miClear, separator, miInfo);
+        return new ContextMenu(miDel, miClear, miMirrors, separator, miInfo);
     }
 
     private void setDirContextMenu() {
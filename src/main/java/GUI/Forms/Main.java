@@ -1,6 +1,10 @@
 package GUI.Forms;
 
+import Backend.FsyncPolicy;
+import Backend.HttpTransport;
+import Backend.RateLimiter;
 import Enums.Mode;
+import Preferences.AppSettings;
 import Utils.DriftyConstants;
 import Utils.Environment;
 import Utils.MessageBroker;
@@ -8,10 +12,12 @@ import Utils.Utility;
 import javafx.application.Application;
 import javafx.scene.Node;
 import javafx.scene.Scene;
+import javafx.scene.control.CheckMenuItem;
 import javafx.scene.control.ContextMenu;
 import javafx.scene.control.Menu;
 import javafx.scene.control.MenuBar;
 import javafx.scene.control.MenuItem;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.input.Clipboard;
 import javafx.scene.layout.AnchorPane;
 import javafx.stage.Stage;
@@ -141,7 +147,70 @@ public class Main extends Application {
                 GUI_Logic.clearJobHistory();
             }
         });
-        menu.getItems().addAll(wipeHistory);
+        CheckMenuItem memoryMappedOutput = new CheckMenuItem("Memory-Mapped Output");
+        memoryMappedOutput.setSelected(AppSettings.get.memoryMappedOutput());
+        memoryMappedOutput.selectedProperty().addListener(((observable, oldValue, newValue) -> AppSettings.set.memoryMappedOutput(newValue)));
+        CheckMenuItem compressedTransfers = new CheckMenuItem("Compressed Transfers");
+        compressedTransfers.setSelected(AppSettings.get.compressedTransfers());
+        compressedTransfers.selectedProperty().addListener(((observable, oldValue, newValue) -> AppSettings.set.compressedTransfers(newValue)));
+        MenuItem bandwidthLimits = new MenuItem("Bandwidth Limits...");
+        bandwidthLimits.setOnAction(e -> {
+            TextInputDialog dialog = new TextInputDialog(RateLimiter.getLimits());
+            dialog.setTitle("Bandwidth Limits");
+            dialog.setHeaderText("Limits in bytes per second, e.g. 2M for all downloads or example.com=500K for one host (0 for no limit).\nThe new limits also apply to the downloads that are running.");
+            dialog.showAndWait().ifPresent(limits -> {
+                try {
+                    RateLimiter.applyLimits(limits);
+                    AppSettings.set.bandwidthLimits(RateLimiter.getLimits());
+                } catch (NumberFormatException ex) {
+                    M.msgLogError("Invalid bandwidth limit! " + ex.getMessage());
+                }
+            });
+        });
+        MenuItem fsyncPolicy = new MenuItem("Disk Sync...");
+        fsyncPolicy.setOnAction(e -> {
+            TextInputDialog dialog = new TextInputDialog(AppSettings.get.fsyncPolicy());
+            dialog.setTitle("Disk Sync");
+            dialog.setHeaderText("When downloads are forced onto the disk: never (left to the system), end (once a download is done),\nor an amount of data such as 64M after which the data written so far is synced.");
+            dialog.showAndWait().ifPresent(policy -> {
+                try {
+                    AppSettings.set.fsyncPolicy(FsyncPolicy.parse(policy).toString());
+                } catch (NumberFormatException ex) {
+                    M.msgLogError("Invalid sync policy! " + ex.getMessage());
+                }
+            });
+        });
+        MenuItem timeouts = new MenuItem("Timeouts...");
+        timeouts.setOnAction(e -> {
+            TextInputDialog dialog = new TextInputDialog(AppSettings.get.connectTimeout() + "," + AppSettings.get.readTimeout());
+            dialog.setTitle("Timeouts");
+            dialog.setHeaderText("Seconds to wait for a connection, then for data, as CONNECT,READ (e.g. 30,60).\nA connection that stays silent longer is replaced by a new one.");
+            dialog.showAndWait().ifPresent(values -> {
+                try {
+                    HttpTransport.applyTimeouts(values);
+                } catch (NumberFormatException ex) {
+                    M.msgLogError("Invalid timeouts! " + ex.getMessage());
+                }
+            });
+        });
+        MenuItem concurrentJobs = new MenuItem("Concurrent Downloads...");
+        concurrentJobs.setOnAction(e -> {
+            TextInputDialog dialog = new TextInputDialog(String.valueOf(AppSettings.get.concurrentJobs()));
+            dialog.setTitle("Concurrent Downloads");
+            dialog.setHeaderText("Number of batch jobs that are downloaded at the same time.\nThe new number also applies to the batch that is running.");
+            dialog.showAndWait().ifPresent(jobs -> {
+                try {
+                    int value = Integer.parseInt(jobs.trim());
+                    if (value < 1) {
+                        throw new NumberFormatException("At least one download must run at a time.");
+                    }
+                    AppSettings.set.concurrentJobs(value);
+                } catch (NumberFormatException ex) {
+                    M.msgLogError("Invalid number of concurrent downloads! " + ex.getMessage());
+                }
+            });
+        });
+        menu.getItems().addAll(wipeHistory, memoryMappedOutput, compressedTransfers, bandwidthLimits, fsyncPolicy, timeouts, concurrentJobs);
         return menu;
     }
 
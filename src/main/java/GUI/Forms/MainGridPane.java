@@ -107,9 +107,25 @@ public class MainGridPane extends GridPane {
     private ListView<Job> listView() {
         ListView<Job> listView = new ListView<>();
         listView.setCellFactory(param -> new ListCell<>() {
+            private final ProgressBar jobProgress = new ProgressBar(0.0);
+            private final Tooltip jobMessage = new Tooltip();
+
             @Override
             protected void updateItem(Job item, boolean empty) {
                 super.updateItem(item, empty);
+                jobProgress.progressProperty().unbind();
+                jobMessage.textProperty().unbind();
+                DownloadFile download = empty || item == null ? null : GUI_Logic.getRunningDownload(item);
+                if (download == null) {
+                    setGraphic(null);
+                    setTooltip(null);
+                } else {
+                    // Show the progress of each job of the batch that is running
+                    jobProgress.progressProperty().bind(download.progressProperty());
+                    jobMessage.textProperty().bind(download.messageProperty());
+                    setGraphic(jobProgress);
+                    setTooltip(jobMessage);
+                }
                 if (empty || item == null) {
                     // Make empty cells not selectable
                     setDisable(true);
@@ -1,8 +1,13 @@
 package GUI.Support;
 
+import Backend.DownloadJournal;
+import Backend.RateLimiter;
+import Backend.Validators;
+
 import java.io.File;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.List;
 
 /**
  * This is a data structure class for batch jobs. It holds the relevant information for a batch job
@@ -12,6 +17,9 @@ public class Job {
     private final String dir;
     private final String filename;
     private boolean repeatDownload = false;
+    private Validators validators; // what is known about the file from its last download
+    private long rateLimit = RateLimiter.UNLIMITED; // bytes per second, on top of the global and per-host limits
+    private List<String> mirrors; // other links to the same file, which the download is spread over
 
     public Job(String link, String dir, String filename, boolean repeatDownload) {
         this.link = link;
@@ -54,11 +62,42 @@ public class Job {
         return Paths.get(dir, filename).toFile();
     }
 
+    public Validators getValidators() {
+        return validators;
+    }
+
+    public void setValidators(Validators validators) {
+        this.validators = validators;
+    }
+
+    public long getRateLimit() {
+        return rateLimit;
+    }
+
+    public void setRateLimit(long rateLimit) {
+        this.rateLimit = rateLimit;
+    }
+
+    public List<String> getMirrors() {
+        return mirrors == null ? List.of() : mirrors;
+    }
+
+    public void setMirrors(List<String> mirrors) {
+        this.mirrors = mirrors;
+    }
+
     public boolean fileExists() {
         Path path = Paths.get(dir,filename);
         return path.toFile().exists();
     }
 
+    /**
+     * @return true if an earlier attempt to download this job was interrupted and left a journal to resume from
+     */
+    public boolean isResumable() {
+        return DownloadJournal.exists(getFile());
+    }
+
     private String getName() {
         String[] nameParts = link.split("/");
         return nameParts[nameParts.length - 1];
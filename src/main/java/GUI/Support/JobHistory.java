@@ -1,26 +1,46 @@
 package GUI.Support;
 
+import Backend.DownloadHistory;
+import Backend.Validators;
 import Preferences.AppSettings;
 
+import java.io.File;
 import java.util.LinkedList;
 import java.util.concurrent.ConcurrentLinkedDeque;
 
-public class JobHistory {
+public class JobHistory implements DownloadHistory {
     public JobHistory() {
         this.jobHistoryList = new ConcurrentLinkedDeque<>();
     }
 
     private ConcurrentLinkedDeque<Job> jobHistoryList;
 
+    /**
+     * Adds the job to the history, replacing any earlier download of the same link so that the validators of the
+     * latest download are kept.
+     */
     public void addJob(Job newJob) {
-        for (Job job : jobHistoryList) {
-            if (job.matchesLink(newJob))
-                return;
-        }
+        jobHistoryList.removeIf(job -> job.matchesLink(newJob));
         jobHistoryList.addLast(newJob);
         save();
     }
 
+    @Override
+    public Validators getValidators(String link, File file) {
+        Job previousJob = getJob(link);
+        if (previousJob != null && previousJob.getFile().getAbsoluteFile().equals(file.getAbsoluteFile())) { // only a download into the same file can be skipped
+            return previousJob.getValidators();
+        }
+        return null;
+    }
+
+    @Override
+    public void addDownload(String link, File file, Validators validators) {
+        Job job = new Job(link, file.getParent(), file.getName(), true);
+        job.setValidators(validators);
+        addJob(job);
+    }
+
     public void clear() {
         jobHistoryList = new ConcurrentLinkedDeque<>();
         save();
@@ -27,6 +27,46 @@ public class Clear { // This class is used to clear the user preferences
         preferences.remove(LAST_DLP_UPDATE_TIME.toString());
     }
 
+    public void connectionPoolIdleTimeout() {
+        preferences.remove(CONNECTION_POOL_IDLE_TIMEOUT.toString());
+    }
+
+    public void connectionPoolSize() {
+        preferences.remove(CONNECTION_POOL_SIZE.toString());
+    }
+
+    public void memoryMappedOutput() {
+        preferences.remove(MEMORY_MAPPED_OUTPUT.toString());
+    }
+
+    public void compressedTransfers() {
+        preferences.remove(COMPRESSED_TRANSFERS.toString());
+    }
+
+    public void fsyncPolicy() {
+        preferences.remove(FSYNC_POLICY.toString());
+    }
+
+    public void checksumAlgorithms() {
+        preferences.remove(CHECKSUM_ALGORITHMS.toString());
+    }
+
+    public void bandwidthLimits() {
+        preferences.remove(BANDWIDTH_LIMITS.toString());
+    }
+
+    public void connectTimeout() {
+        preferences.remove(CONNECT_TIMEOUT.toString());
+    }
+
+    public void readTimeout() {
+        preferences.remove(READ_TIMEOUT.toString());
+    }
+
+    public void concurrentJobs() {
+        preferences.remove(CONCURRENT_JOBS.toString());
+    }
+
     public void lastFolder() {
         preferences.remove(LAST_FOLDER.toString());
     }
@@ -1,5 +1,11 @@
 package Preferences;
 
+import Backend.BatchProgress;
+import Backend.ConnectionPool;
+import Backend.FsyncPolicy;
+import Backend.HttpTransport;
+import Backend.RateLimiter;
+import Backend.StreamingChecksum;
 import Enums.Program;
 import GUI.Support.Folders;
 import GUI.Support.JobHistory;
@@ -50,6 +56,46 @@ public class Get { // This class is used to get the user preferences
         return preferences.getLong(LAST_DLP_UPDATE_TIME.toString(), 1000L);
     }
 
+    public long connectionPoolIdleTimeout() {
+        return preferences.getLong(CONNECTION_POOL_IDLE_TIMEOUT.toString(), ConnectionPool.DEFAULT_IDLE_TIMEOUT);
+    }
+
+    public int connectionPoolSize() {
+        return preferences.getInt(CONNECTION_POOL_SIZE.toString(), ConnectionPool.DEFAULT_MAX_SIZE);
+    }
+
+    public boolean memoryMappedOutput() {
+        return preferences.getBoolean(MEMORY_MAPPED_OUTPUT.toString(), false);
+    }
+
+    public boolean compressedTransfers() {
+        return preferences.getBoolean(COMPRESSED_TRANSFERS.toString(), true);
+    }
+
+    public String fsyncPolicy() {
+        return preferences.get(FSYNC_POLICY.toString(), FsyncPolicy.NEVER);
+    }
+
+    public String checksumAlgorithms() {
+        return preferences.get(CHECKSUM_ALGORITHMS.toString(), StreamingChecksum.SHA_256);
+    }
+
+    public String bandwidthLimits() {
+        return preferences.get(BANDWIDTH_LIMITS.toString(), RateLimiter.formatRate(RateLimiter.UNLIMITED));
+    }
+
+    public long connectTimeout() {
+        return preferences.getLong(CONNECT_TIMEOUT.toString(), HttpTransport.DEFAULT_CONNECT_TIMEOUT);
+    }
+
+    public long readTimeout() {
+        return preferences.getLong(READ_TIMEOUT.toString(), HttpTransport.DEFAULT_READ_TIMEOUT);
+    }
+
+    public int concurrentJobs() {
+        return preferences.getInt(CONCURRENT_JOBS.toString(), BatchProgress.DEFAULT_CONCURRENT_JOBS);
+    }
+
     public String lastDownloadFolder() {
         String defaultPath = Paths.get(System.getProperty("user.home"), "Downloads").toAbsolutePath().toString();
         return preferences.get(LAST_FOLDER.toString(), defaultPath);
@@ -3,6 +3,6 @@ package Preferences;
 import java.util.prefs.Preferences;
 
 enum Labels {
-    FOLDERS, MAIN_AUTO_PASTE, LAST_DLP_UPDATE_TIME, LAST_FOLDER, JOBS, MENU_BAR_SYSTEM, ALWAYS_AUTO_PASTE;
+    FOLDERS, MAIN_AUTO_PASTE, LAST_DLP_UPDATE_TIME, LAST_FOLDER, JOBS, MENU_BAR_SYSTEM, ALWAYS_AUTO_PASTE, CONNECTION_POOL_IDLE_TIMEOUT, CONNECTION_POOL_SIZE, MEMORY_MAPPED_OUTPUT, CHECKSUM_ALGORITHMS, BANDWIDTH_LIMITS, CONCURRENT_JOBS, COMPRESSED_TRANSFERS, FSYNC_POLICY, CONNECT_TIMEOUT, READ_TIMEOUT;
     public static final Preferences PREFERENCES = Preferences.userNodeForPackage(Labels.class);
 }
@@ -45,6 +45,56 @@ public class Set { // This class is used to set the user preferences
         preferences.putLong(LAST_DLP_UPDATE_TIME.toString(), value);
     }
 
+    public void connectionPoolIdleTimeout(long seconds) {
+        AppSettings.clear.connectionPoolIdleTimeout();
+        preferences.putLong(CONNECTION_POOL_IDLE_TIMEOUT.toString(), seconds);
+    }
+
+    public void connectionPoolSize(int size) {
+        AppSettings.clear.connectionPoolSize();
+        preferences.putInt(CONNECTION_POOL_SIZE.toString(), size);
+    }
+
+    public void memoryMappedOutput(boolean isMemoryMappedOutputEnabled) {
+        AppSettings.clear.memoryMappedOutput();
+        preferences.putBoolean(MEMORY_MAPPED_OUTPUT.toString(), isMemoryMappedOutputEnabled);
+    }
+
+    public void compressedTransfers(boolean isCompressedTransfersEnabled) {
+        AppSettings.clear.compressedTransfers();
+        preferences.putBoolean(COMPRESSED_TRANSFERS.toString(), isCompressedTransfersEnabled);
+    }
+
+    public void fsyncPolicy(String policy) {
+        AppSettings.clear.fsyncPolicy();
+        preferences.put(FSYNC_POLICY.toString(), policy);
+    }
+
+    public void checksumAlgorithms(String algorithms) {
+        AppSettings.clear.checksumAlgorithms();
+        preferences.put(CHECKSUM_ALGORITHMS.toString(), algorithms);
+    }
+
+    public void bandwidthLimits(String limits) {
+        AppSettings.clear.bandwidthLimits();
+        preferences.put(BANDWIDTH_LIMITS.toString(), limits);
+    }
+
+    public void connectTimeout(long seconds) {
+        AppSettings.clear.connectTimeout();
+        preferences.putLong(CONNECT_TIMEOUT.toString(), seconds);
+    }
+
+    public void readTimeout(long seconds) {
+        AppSettings.clear.readTimeout();
+        preferences.putLong(READ_TIMEOUT.toString(), seconds);
+    }
+
+    public void concurrentJobs(int jobs) {
+        AppSettings.clear.concurrentJobs();
+        preferences.putInt(CONCURRENT_JOBS.toString(), jobs);
+    }
+
     public void lastFolder(String lastFolderPath) {
         AppSettings.clear.lastFolder();
         preferences.put(LAST_FOLDER.toString(), lastFolderPath);
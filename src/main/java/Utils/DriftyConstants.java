@@ -27,11 +27,23 @@ public final class DriftyConstants {
     public static final String VERSION_FLAG = "--version";
     public static final String LOCATION_FLAG = "--location";
     public static final String BATCH_FLAG = "--batch";
+    public static final String MMAP_FLAG = "--mmap";
+    public static final String LIMIT_RATE_FLAG = "--limit-rate";
+    public static final String MIRROR_FLAG = "--mirror";
+    public static final String COMPRESSION_FLAG = "--compression";
+    public static final String FSYNC_FLAG = "--fsync";
+    public static final String TIMEOUT_FLAG = "--timeout";
     public static final String HELP_FLAG_SHORT = "-h";
     public static final String NAME_FLAG_SHORT = "-n";
     public static final String VERSION_FLAG_SHORT = "-v";
     public static final String LOCATION_FLAG_SHORT = "-l";
     public static final String BATCH_FLAG_SHORT = "-b";
+    public static final String MMAP_FLAG_SHORT = "-m";
+    public static final String LIMIT_RATE_FLAG_SHORT = "-r";
+    public static final String MIRROR_FLAG_SHORT = "-M";
+    public static final String COMPRESSION_FLAG_SHORT = "-c";
+    public static final String FSYNC_FLAG_SHORT = "-f";
+    public static final String TIMEOUT_FLAG_SHORT = "-t";
     public static final String ENTER_FILE_NAME_WITH_EXTENSION = "Please enter the filename with file extension (filename.extension) : ";
     public static final String ENTER_FILE_LINK = "Enter the link to the file (in the form of https://www.example.com/filename.extension) or a YouTube/Instagram Video link : ";
     public static final String USER_HOME_PROPERTY = "user.home";
@@ -71,4 +83,6 @@ public final class DriftyConstants {
     public static final String FAILED_CONNECTION_F = "Failed to connect to %s!";
     public static final String SUCCESSFULLY_DOWNLOADED_F = "Successfully downloaded %s!";
     public static final String FAILED_TO_DOWNLOAD_F = "Failed to download %s!";
+    public static final String NOT_ENOUGH_SPACE_F = "Not enough free space for \"%s\" on %s! %s is needed, but only %s is available.";
+    public static final String NOT_MODIFIED_F = "%s has not changed since it was last downloaded, skipping it.";
 }
@@ -1,6 +1,7 @@
 package Utils;
 
 import Backend.CopyYtDLP;
+import Backend.RateLimiter;
 import Enums.OS;
 import Enums.Program;
 import Preferences.AppSettings;
@@ -50,6 +51,11 @@ public class Environment {
         } else {
             M.msgInitInfo("Drifty folder already exists : " + appUseFolderPath);
         }
+        try {
+            RateLimiter.applyLimits(AppSettings.get.bandwidthLimits());
+        } catch (NumberFormatException e) {
+            M.msgInitError("Failed to apply the saved bandwidth limits! " + e.getMessage());
+        }
     }
 
     public static void setMessageBroker(MessageBroker messageBroker) {
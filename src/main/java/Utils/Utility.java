@@ -3,6 +3,7 @@ package Utils;
 import Backend.DownloadFolderLocator;
 import Enums.OS;
 import Enums.Program;
+import Preferences.AppSettings;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import com.google.gson.JsonElement;
@@ -59,6 +60,8 @@ public final class Utility {
         try {
             URL url = URI.create(link).toURL();
             HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+            connection.setConnectTimeout((int) AppSettings.get.connectTimeout() * 1000);
+            connection.setReadTimeout((int) AppSettings.get.readTimeout() * 1000);
             connection.setRequestMethod("HEAD"); // Faster validation and hence improves performance
             connection.connect();
             M.msgLinkInfo("Link is valid!");
@@ -69,6 +72,8 @@ public final class Utility {
             try {
                 URL projectWebsite = URI.create(DRIFTY_WEBSITE_URL).toURL();
                 HttpURLConnection connectProjectWebsite = (HttpURLConnection) projectWebsite.openConnection();
+                connectProjectWebsite.setConnectTimeout((int) AppSettings.get.connectTimeout() * 1000);
+                connectProjectWebsite.setReadTimeout((int) AppSettings.get.readTimeout() * 1000);
                 connectProjectWebsite.connect();
                 M.msgLinkError("Link is invalid!"); // If our project website can be connected to, then the one entered by user is not valid! [NOTE: UnknownHostException is thrown if either internet is not connected or the website address is incorrect]
             } catch (UnknownHostException e) {
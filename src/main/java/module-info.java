@@ -10,11 +10,13 @@ module Drifty {
     requires org.yaml.snakeyaml;
     requires org.jetbrains.annotations;
     requires java.desktop;
+    requires java.net.http;
 
     exports GUI.Forms to javafx.graphics;
     exports GUI.Support;
     exports Enums;
 
+    opens Backend to com.google.gson;
     opens GUI.Support to com.google.gson;
     opens GUI.Forms to com.google.gson;
 
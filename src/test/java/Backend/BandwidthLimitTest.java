@@ -0,0 +1,50 @@
+package Backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BandwidthLimitTest {
+    private static final long MB = 1024 * 1024;
+
+    @AfterEach
+    void removeGlobalLimit() {
+        RateLimiter.GLOBAL.setRate(RateLimiter.UNLIMITED);
+    }
+
+    @Test
+    void isUnlimitedWithoutAnyLimit() {
+        BandwidthLimit limit = BandwidthLimit.forLink("https://unlimited.example.com/file.bin", RateLimiter.UNLIMITED);
+        assertEquals(RateLimiter.UNLIMITED, limit.getRate());
+        assertEquals(Long.MAX_VALUE, limit.getStepSize());
+        assertEquals(List.of(), limit.getYtDlpArguments());
+    }
+
+    @Test
+    void keepsToTheLowestLimit() {
+        RateLimiter.forHost("lowest.example.com").setRate(MB);
+        BandwidthLimit limit = BandwidthLimit.forLink("https://lowest.example.com/file.bin", 2 * MB);
+        assertEquals(MB, limit.getRate());
+        RateLimiter.GLOBAL.setRate(MB / 2);
+        assertEquals(MB / 2, limit.getRate());
+        assertEquals(List.of("--limit-rate", "512K"), limit.getYtDlpArguments());
+    }
+
+    @Test
+    void sharesTheLimitOfTheDownloadWithItsMirrors() {
+        BandwidthLimit limit = BandwidthLimit.forLink("https://primary.example.com/file.bin", 2 * MB);
+        BandwidthLimit mirrorLimit = limit.forHost("mirror.example.com");
+        assertSame(limit.getJobLimiter(), mirrorLimit.getJobLimiter());
+        limit.getJobLimiter().setRate(MB);
+        assertEquals(MB, mirrorLimit.getRate());
+    }
+
+    @Test
+    void ignoresTheHostOfAnInvalidLink() {
+        BandwidthLimit limit = BandwidthLimit.forLink("not a link", MB);
+        assertEquals(MB, limit.getRate());
+    }
+}
@@ -0,0 +1,86 @@
+package Backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.http.HttpHeaders;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ContentDecoderTest {
+    private static final byte[] DATA = "line of a compressible text file\n".repeat(1000).getBytes(StandardCharsets.US_ASCII);
+
+    @Test
+    void inflatesZlibData() throws IOException {
+        assertArrayEquals(DATA, decode(deflate(DATA, false), "deflate"));
+    }
+
+    @Test
+    void inflatesRawDeflateData() throws IOException {
+        assertArrayEquals(DATA, decode(deflate(DATA, true), "deflate"));
+    }
+
+    @Test
+    void inflatesTinyBodies() throws IOException {
+        byte[] data = {0x78};
+        assertArrayEquals(data, decode(deflate(data, true), "deflate"));
+        assertArrayEquals(data, decode(deflate(data, false), "deflate"));
+    }
+
+    @Test
+    void decodesGzipData() throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream out = new GZIPOutputStream(compressed)) {
+            out.write(DATA);
+        }
+        assertArrayEquals(DATA, decode(compressed.toByteArray(), "gzip"));
+        assertArrayEquals(DATA, decode(compressed.toByteArray(), "x-gzip"));
+    }
+
+    @Test
+    void readsTheEncodingOfTheBody() {
+        assertEquals("gzip", ContentDecoder.getContentEncoding(headers("Content-Encoding", " GZIP ")));
+        assertNull(ContentDecoder.getContentEncoding(headers("Content-Encoding", "identity")));
+        assertNull(ContentDecoder.getContentEncoding(headers("Content-Type", "text/plain")));
+        assertFalse(ContentDecoder.canDecode("compress"));
+    }
+
+    @Test
+    void keepsEncodedFilesAsTheyAre() {
+        assertTrue(ContentDecoder.isEncodedFile(new File("archive.tar.gz"), "gzip"));
+        assertFalse(ContentDecoder.isEncodedFile(new File("page.html"), "gzip"));
+        assertTrue(ContentDecoder.isEncodedFile(new File("data.zz"), "deflate"));
+    }
+
+    private static byte[] deflate(byte[] data, boolean raw) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, raw);
+        deflater.setInput(data);
+        deflater.finish();
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        while (!deflater.finished()) {
+            compressed.write(buffer, 0, deflater.deflate(buffer));
+        }
+        deflater.end();
+        return compressed.toByteArray();
+    }
+
+    private static byte[] decode(byte[] body, String encoding) throws IOException {
+        try (InputStream in = ContentDecoder.decode(new ByteArrayInputStream(body), encoding)) {
+            return in.readAllBytes();
+        }
+    }
+
+    private static HttpHeaders headers(String name, String value) {
+        return HttpHeaders.of(Map.of(name, List.of(value)), (headerName, headerValue) -> true);
+    }
+}
@@ -0,0 +1,136 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DownloadJournalTest {
+    private static final long MB = DownloadJournal.BLOCK_SIZE;
+    private static final long TOTAL_SIZE = 5 * MB + 100; // the last block is short
+    private static final URL URL;
+
+    static {
+        Environment.setMessageBroker(new MessageBroker(System.out));
+        try {
+            URL = URI.create("http://example.com/file.bin").toURL();
+        } catch (IOException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    @TempDir
+    File directory;
+
+    @Test
+    void countsOnlyCompleteBlocks() throws IOException {
+        DownloadJournal journal = DownloadJournal.open(createTarget(), URL, "\"v1\"", null, TOTAL_SIZE);
+        journal.markCompleted(MB / 2, 3 * MB); // the first half block is not complete
+        assertEquals(2 * MB, journal.getCompletedBytes());
+        List<Segment> missingRanges = journal.getMissingRanges();
+        assertEquals(2, missingRanges.size());
+        assertRange(0, MB - 1, missingRanges.get(0));
+        assertRange(3 * MB, TOTAL_SIZE - 1, missingRanges.get(1));
+    }
+
+    @Test
+    void addsUpTheWritesIntoABlockInAnyOrder() throws IOException {
+        DownloadJournal journal = DownloadJournal.open(createTarget(), URL, "\"v1\"", null, TOTAL_SIZE);
+        journal.markCompleted(MB / 2, MB + 10); // crosses into the second block
+        journal.markCompleted(MB / 4, MB / 2);
+        assertEquals(0, journal.getCompletedBytes());
+        journal.markCompleted(0, MB / 4);
+        assertEquals(MB, journal.getCompletedBytes());
+        assertRange(MB, TOTAL_SIZE - 1, journal.getMissingRanges().get(0));
+    }
+
+    @Test
+    void completesABlockWrittenByTwoConnections() throws IOException {
+        DownloadJournal journal = DownloadJournal.open(createTarget(), URL, "\"v1\"", null, TOTAL_SIZE);
+        // both connections read the range from its start, and each writes the bytes it receives first
+        Segment range = new Segment(2 * MB, 3 * MB - 1);
+        long[] streamPositions = {2 * MB, 2 * MB};
+        int[] readSizes = {3000, 7000};
+        for (int connection = 0; range.hasRemaining(); connection = 1 - connection) {
+            ByteBuffer data = ByteBuffer.allocate(readSizes[connection]);
+            long position = range.take(data, streamPositions[connection]);
+            streamPositions[connection] += readSizes[connection];
+            journal.markCompleted(position, position + data.remaining());
+        }
+        assertEquals(MB, journal.getCompletedBytes());
+        journal.markCompleted(2 * MB, 2 * MB + 100); // a block that is complete stays as it is
+        assertEquals(MB, journal.getCompletedBytes());
+    }
+
+    @Test
+    void marksTheShortLastBlockAtTheEndOfTheFile() throws IOException {
+        DownloadJournal journal = DownloadJournal.open(createTarget(), URL, "\"v1\"", null, TOTAL_SIZE);
+        journal.markCompleted(5 * MB, TOTAL_SIZE);
+        assertEquals(100, journal.getCompletedBytes());
+        List<Segment> missingRanges = journal.getMissingRanges();
+        assertEquals(1, missingRanges.size());
+        assertRange(0, 5 * MB - 1, missingRanges.get(0));
+    }
+
+    @Test
+    void resumesWhenTheFileIsUnchanged() throws IOException {
+        File target = createTarget();
+        DownloadJournal journal = DownloadJournal.open(target, URL, "\"v1\"", null, TOTAL_SIZE);
+        journal.markCompleted(0, 2 * MB);
+        journal.flush();
+        DownloadJournal resumed = DownloadJournal.open(target, URL, "\"v1\"", null, TOTAL_SIZE);
+        assertEquals(2 * MB, resumed.getCompletedBytes());
+        assertRange(2 * MB, TOTAL_SIZE - 1, resumed.getMissingRanges().get(0));
+    }
+
+    @Test
+    void startsOverWhenTheFileChanged() throws IOException {
+        File target = createTarget();
+        DownloadJournal journal = DownloadJournal.open(target, URL, "\"v1\"", null, TOTAL_SIZE);
+        journal.markCompleted(0, 2 * MB);
+        journal.flush();
+        assertEquals(0, DownloadJournal.open(target, URL, "\"v2\"", null, TOTAL_SIZE).getCompletedBytes());
+    }
+
+    @Test
+    void doesNotTrustWeakValidators() throws IOException {
+        File target = createTarget();
+        DownloadJournal journal = DownloadJournal.open(target, URL, "W/\"v1\"", null, TOTAL_SIZE);
+        journal.markCompleted(0, 2 * MB);
+        journal.flush();
+        assertEquals(0, DownloadJournal.open(target, URL, "W/\"v1\"", null, TOTAL_SIZE).getCompletedBytes());
+    }
+
+    @Test
+    void resumesWithTheLastModifiedDateAlone() throws IOException {
+        File target = createTarget();
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        DownloadJournal journal = DownloadJournal.open(target, URL, null, lastModified, TOTAL_SIZE);
+        journal.markCompleted(0, MB);
+        journal.flush();
+        assertEquals(MB, DownloadJournal.open(target, URL, null, lastModified, TOTAL_SIZE).getCompletedBytes());
+    }
+
+    private File createTarget() throws IOException {
+        File target = new File(directory, "file.bin");
+        try (RandomAccessFile file = new RandomAccessFile(target, "rw")) {
+            file.setLength(TOTAL_SIZE);
+        }
+        return target;
+    }
+
+    private static void assertRange(long start, long end, Segment segment) {
+        assertEquals(start, segment.getStart());
+        assertEquals(end, segment.getEnd());
+    }
+}
@@ -0,0 +1,43 @@
+package Backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FsyncPolicyTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void neverSyncs() {
+        FsyncPolicy policy = FsyncPolicy.parse(" Never ");
+        assertFalse(policy.syncsAtEnd());
+        assertFalse(policy.isDue(Long.MAX_VALUE));
+        assertEquals("never", policy.toString());
+    }
+
+    @Test
+    void syncsOnlyAtTheEnd() {
+        FsyncPolicy policy = FsyncPolicy.parse("end");
+        assertTrue(policy.syncsAtEnd());
+        assertFalse(policy.isDue(Long.MAX_VALUE));
+        assertEquals("end", policy.toString());
+    }
+
+    @Test
+    void syncsEveryTimeTheIntervalIsWritten() {
+        FsyncPolicy policy = FsyncPolicy.parse("64M");
+        assertTrue(policy.syncsAtEnd());
+        assertFalse(policy.isDue(64 * MB - 1));
+        assertTrue(policy.isDue(64 * MB));
+        assertEquals("64M", policy.toString());
+        assertEquals(policy.toString(), FsyncPolicy.parse(policy.toString()).toString());
+    }
+
+    @Test
+    void rejectsInvalidPolicies() {
+        assertThrows(NumberFormatException.class, () -> FsyncPolicy.parse("0"));
+        assertThrows(NumberFormatException.class, () -> FsyncPolicy.parse("off"));
+        assertThrows(NumberFormatException.class, () -> FsyncPolicy.parse("sometimes"));
+        assertThrows(NumberFormatException.class, () -> FsyncPolicy.parse("-1M"));
+    }
+}
@@ -0,0 +1,103 @@
+package Backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.URL;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HttpTransportTest {
+    private static final String RANGE = "HTTP/1.1 206 Partial Content\r\nContent-Range: bytes 0-3/10\r\nETag: %s\r\nContent-Length: 4\r\n\r\ndata";
+    private static final String WHOLE_FILE = "HTTP/1.1 200 OK\r\nETag: \"v2\"\r\nContent-Length: 10\r\n\r\nnew data!!";
+    private final List<String> requestHeaders = new CopyOnWriteArrayList<>();
+    private ServerSocket server;
+    private HttpTransport transport;
+    private URL url;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        transport = new HttpTransport(5, 5);
+        url = URI.create("http://127.0.0.1:" + server.getLocalPort() + "/file.bin").toURL();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        transport.close();
+        server.close();
+    }
+
+    @Test
+    void requestsTheRangeOfTheSameVersionOnly() throws IOException {
+        answerWith(String.format(RANGE, "\"v1\""));
+        HttpResponse<InputStream> response = transport.getRange(url, 0, 3, "\"v1\"");
+        try (InputStream body = response.body()) {
+            assertEquals("data", new String(body.readAllBytes(), StandardCharsets.US_ASCII));
+        }
+        assertTrue(requestHeaders.contains("if-range: \"v1\""), "If-Range was not sent : " + requestHeaders);
+    }
+
+    @Test
+    void takesTheWholeFileForAChangedFile() throws IOException {
+        answerWith(WHOLE_FILE);
+        assertThrows(HttpTransport.FileChangedException.class, () -> transport.getRange(url, 0, 3, "\"v1\""));
+    }
+
+    @Test
+    void takesAnotherETagForAChangedFile() throws IOException {
+        answerWith(String.format(RANGE, "\"v2\"")); // a server that ignores If-Range
+        assertThrows(HttpTransport.FileChangedException.class, () -> transport.getRange(url, 0, 3, "\"v1\""));
+    }
+
+    @Test
+    void acceptsAnyVersionWithoutAValidator() throws IOException {
+        answerWith(String.format(RANGE, "\"v2\""));
+        transport.getRange(url, 0, 3).body().close();
+        assertTrue(requestHeaders.stream().noneMatch(header -> header.startsWith("if-range")));
+    }
+
+    @Test
+    void usesOnlyStrongETagsAsValidators() {
+        String lastModified = "Wed, 21 Oct 2015 07:28:00 GMT";
+        assertEquals("\"v1\"", HttpTransport.getIfRange("\"v1\"", lastModified));
+        assertEquals(lastModified, HttpTransport.getIfRange("W/\"v1\"", lastModified));
+        assertNull(HttpTransport.getIfRange("W/\"v1\"", null));
+    }
+
+    /**
+     * Answers the next request with the given response, recording the headers of the request in lower case.
+     */
+    private void answerWith(String response) {
+        Thread thread = new Thread(() -> {
+            try (Socket socket = server.accept()) {
+                BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                String line;
+                while ((line = in.readLine()) != null && !line.isEmpty()) {
+                    requestHeaders.add(line.toLowerCase(Locale.ROOT));
+                }
+                OutputStream out = socket.getOutputStream();
+                out.write(response.getBytes(StandardCharsets.US_ASCII));
+                out.flush();
+            } catch (IOException ignored) { // the test fails on the client side
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,76 @@
+package Backend;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RateLimiterTest {
+    private static final long KB = 1024;
+    private static final long MB = 1024 * KB;
+
+    @AfterEach
+    void removeGlobalLimit() {
+        RateLimiter.GLOBAL.setRate(RateLimiter.UNLIMITED);
+    }
+
+    @Test
+    void parsesRatesWithSuffixes() {
+        assertEquals(500, RateLimiter.parseRate("500"));
+        assertEquals(500 * KB, RateLimiter.parseRate("500K"));
+        assertEquals(2 * MB, RateLimiter.parseRate(" 2m "));
+        assertEquals(3 * MB / 2, RateLimiter.parseRate("1.5M"));
+        assertEquals(2 * MB, RateLimiter.parseRate("2MB/s"));
+        assertEquals(1024 * MB, RateLimiter.parseRate("1G"));
+        assertEquals(RateLimiter.UNLIMITED, RateLimiter.parseRate("off"));
+        assertEquals(RateLimiter.UNLIMITED, RateLimiter.parseRate("0"));
+    }
+
+    @Test
+    void rejectsInvalidRates() {
+        assertThrows(NumberFormatException.class, () -> RateLimiter.parseRate("-1M"));
+        assertThrows(NumberFormatException.class, () -> RateLimiter.parseRate("fast"));
+        assertThrows(NumberFormatException.class, () -> RateLimiter.parseRate("NaN"));
+    }
+
+    @Test
+    void formatsRatesInTheLargestWholeUnit() {
+        assertEquals("2M", RateLimiter.formatRate(2 * MB));
+        assertEquals("1536K", RateLimiter.formatRate(3 * MB / 2));
+        assertEquals("1000", RateLimiter.formatRate(1000));
+        assertEquals("0", RateLimiter.formatRate(RateLimiter.UNLIMITED));
+    }
+
+    @Test
+    void appliesGlobalAndHostLimits() {
+        RateLimiter.applyLimits("2M, apply.example.com=500K");
+        assertEquals(2 * MB, RateLimiter.GLOBAL.getRate());
+        assertEquals(500 * KB, RateLimiter.forHost("Apply.Example.com").getRate());
+        assertTrue(RateLimiter.getLimits().startsWith("2M,"));
+        assertTrue(RateLimiter.getLimits().contains("apply.example.com=500K"));
+        RateLimiter.applyLimits("apply.example.com=0");
+        assertEquals(RateLimiter.UNLIMITED, RateLimiter.forHost("apply.example.com").getRate());
+        assertEquals(2 * MB, RateLimiter.GLOBAL.getRate());
+    }
+
+    @Test
+    void changesNoLimitIfAnyRateIsInvalid() {
+        assertThrows(NumberFormatException.class, () -> RateLimiter.applyLimits("1M,invalid.example.com=fast"));
+        assertEquals(RateLimiter.UNLIMITED, RateLimiter.GLOBAL.getRate());
+    }
+
+    @Test
+    void makesTheCallerWaitForTheBytesItIsInDebtFor() {
+        RateLimiter limiter = new RateLimiter(1000);
+        long wait = limiter.reserve(1000); // the bucket starts empty
+        assertTrue(wait > 900_000_000L && wait <= 1_000_000_000L, "Expected about a second but got " + wait + " ns");
+        assertEquals(0, new RateLimiter(RateLimiter.UNLIMITED).reserve(MB));
+    }
+
+    @Test
+    void readsAboutATenthOfTheRateAtATime() {
+        assertEquals(MB, new RateLimiter(10 * MB).getStepSize());
+        assertEquals(16 * KB, new RateLimiter(KB).getStepSize());
+        assertEquals(Long.MAX_VALUE, new RateLimiter(RateLimiter.UNLIMITED).getStepSize());
+    }
+}
@@ -0,0 +1,27 @@
+package Backend;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RetryPolicyTest {
+    @Test
+    void doublesTheDelayWithEveryAttempt() {
+        for (int i = 0; i < 100; i++) {
+            assertBetween(250, 500, RetryPolicy.getDelay(1));
+            assertBetween(500, 1000, RetryPolicy.getDelay(2));
+            assertBetween(1000, 2000, RetryPolicy.getDelay(3));
+            assertBetween(2000, 4000, RetryPolicy.getDelay(4));
+        }
+    }
+
+    @Test
+    void givesUpAfterTheLastAttempt() {
+        assertEquals(-1, RetryPolicy.getDelay(RetryPolicy.MAX_ATTEMPTS));
+        assertEquals(-1, RetryPolicy.getDelay(RetryPolicy.MAX_ATTEMPTS + 1));
+    }
+
+    private static void assertBetween(long min, long max, long delay) {
+        assertTrue(delay >= min && delay <= max, "Expected a delay between " + min + " and " + max + " ms but got " + delay);
+    }
+}
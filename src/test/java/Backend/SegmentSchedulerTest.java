@@ -0,0 +1,164 @@
+package Backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentSchedulerTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    void handsOutChunksCoveringTheWholeFile() {
+        SegmentScheduler scheduler = new SegmentScheduler(10 * MB + 123, 4); // chunks of the minimum size, which are never split
+        List<Segment> segments = takeAll(scheduler);
+        assertCovers(segments, 0, 10 * MB + 122);
+    }
+
+    @Test
+    void coversOnlyTheMissingRanges() {
+        SegmentScheduler scheduler = new SegmentScheduler(List.of(new Segment(0, 3 * MB - 1), new Segment(8 * MB, 9 * MB - 1)), 1);
+        List<Segment> segments = takeAll(scheduler);
+        long bytes = 0;
+        for (Segment segment : segments) {
+            assertTrue(segment.getEnd() < 3 * MB || segment.getStart() >= 8 * MB, "a chunk crosses the gap between the ranges");
+            bytes += segment.remaining();
+        }
+        assertEquals(4 * MB, bytes);
+    }
+
+    @Test
+    void stealsTheUpperHalfOnceThePoolIsEmpty() {
+        SegmentScheduler scheduler = new SegmentScheduler(8 * MB, 1); // four chunks of 2 MB
+        List<Segment> segments = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            segments.add(scheduler.next());
+        }
+        List<Long> endsBefore = new ArrayList<>();
+        for (Segment segment : segments) {
+            endsBefore.add(segment.getEnd());
+        }
+        assertTrue(scheduler.hasWork());
+        Segment stolen = scheduler.next();
+        assertNotNull(stolen);
+        int victim = -1;
+        for (int i = 0; i < segments.size(); i++) {
+            if (segments.get(i).getEnd() != endsBefore.get(i)) {
+                victim = i;
+            }
+        }
+        assertNotEquals(-1, victim);
+        assertEquals((long) endsBefore.get(victim), stolen.getEnd());
+        assertEquals(stolen.getStart() - 1, segments.get(victim).getEnd());
+        segments.add(stolen);
+        assertCovers(segments, 0, 8 * MB - 1);
+    }
+
+    @Test
+    void alignsChunksAndStolenHalvesToJournalBlocks() {
+        SegmentScheduler scheduler = new SegmentScheduler(10 * MB + 123, 1); // an equal share would be 2.5 MB
+        List<Segment> segments = new ArrayList<>();
+        Segment segment;
+        while ((segment = scheduler.next()) != null && segments.size() < 100) {
+            assertEquals(0, segment.getStart() % DownloadJournal.BLOCK_SIZE, "segment starts inside a block : " + segment.getStart());
+            segments.add(segment);
+        }
+        assertCovers(segments, 0, 10 * MB + 122);
+    }
+
+    @Test
+    void hasNoWorkOnceTheRangesAreTooSmallToSplit() {
+        SegmentScheduler scheduler = new SegmentScheduler(MB, 4);
+        Segment segment = scheduler.next();
+        assertNotNull(segment);
+        assertFalse(scheduler.hasWork());
+        assertNull(scheduler.next());
+        segment.advance(segment.remaining());
+        scheduler.finished(segment);
+        assertTrue(scheduler.isComplete());
+    }
+
+    @Test
+    void hedgesTheSlowestRangeInTheEndgame() throws InterruptedException {
+        SegmentScheduler scheduler = new SegmentScheduler(MB, 2);
+        Segment segment = scheduler.next();
+        assertNull(scheduler.next()); // its speed is not known yet
+        Thread.sleep(1100); // without any progress, the range is not going to finish soon
+        assertTrue(scheduler.hasWork());
+        Segment copy = scheduler.next();
+        assertSame(segment, copy);
+        assertNull(scheduler.next()); // a range gets at most one copy
+        ClosableBody body = new ClosableBody();
+        segment.attach(body);
+        copy.take(ByteBuffer.allocate((int) MB), 0);
+        scheduler.finished(copy);
+        assertTrue(body.closed); // the first connection stops reading a range that is complete
+        assertFalse(scheduler.isComplete());
+        scheduler.finished(segment);
+        assertTrue(scheduler.isComplete());
+    }
+
+    @Test
+    void doesNotHedgeARangeThatIsAboutToFinish() throws InterruptedException {
+        SegmentScheduler scheduler = new SegmentScheduler(MB, 2);
+        Segment segment = scheduler.next();
+        Thread.sleep(1100);
+        segment.advance(MB - 1000);
+        assertFalse(scheduler.hasWork());
+        assertNull(scheduler.next());
+    }
+
+    @Test
+    void putsTheRestOfAFailedSegmentBack() {
+        SegmentScheduler scheduler = new SegmentScheduler(MB, 1);
+        Segment segment = scheduler.next();
+        segment.advance(1000);
+        scheduler.finished(segment);
+        assertFalse(scheduler.isComplete());
+        Segment retried = scheduler.next();
+        assertSame(segment, retried);
+        assertEquals(1000, retried.getPosition());
+    }
+
+    private static final class ClosableBody extends ByteArrayInputStream {
+        private boolean closed;
+
+        private ClosableBody() {
+            super(new byte[0]);
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    /**
+     * Takes segments until the scheduler has none left, which does not steal anything as long as every chunk is
+     * smaller than two minimum segments.
+     */
+    private static List<Segment> takeAll(SegmentScheduler scheduler) {
+        List<Segment> segments = new ArrayList<>();
+        Segment segment;
+        while ((segment = scheduler.next()) != null) {
+            segments.add(segment);
+        }
+        return segments;
+    }
+
+    private static void assertCovers(List<Segment> segments, long start, long end) {
+        List<Segment> sorted = new ArrayList<>(segments);
+        sorted.sort(Comparator.comparingLong(Segment::getStart));
+        long expected = start;
+        for (Segment segment : sorted) {
+            assertEquals(expected, segment.getStart(), "gap or overlap between the segments");
+            expected = segment.getEnd() + 1;
+        }
+        assertEquals(end + 1, expected);
+    }
+}
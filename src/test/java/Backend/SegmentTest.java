@@ -0,0 +1,88 @@
+package Backend;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SegmentTest {
+    @Test
+    void advancesUntilTheEnd() {
+        Segment segment = new Segment(100, 199);
+        assertEquals(100, segment.remaining());
+        assertTrue(segment.advance(60));
+        assertEquals(160, segment.getPosition());
+        assertEquals(40, segment.remaining());
+        assertFalse(segment.advance(40));
+        assertFalse(segment.hasRemaining());
+    }
+
+    @Test
+    void takesOnlyTheBytesThatAreStillMissing() {
+        Segment segment = new Segment(1000, 1099);
+        ByteBuffer first = ByteBuffer.allocate(40);
+        assertEquals(1000, segment.take(first, 1000));
+        assertEquals(40, first.remaining());
+        ByteBuffer copy = ByteBuffer.allocate(30); // a hedged copy that started reading the range later
+        assertEquals(1040, segment.take(copy, 1020));
+        assertEquals(10, copy.remaining());
+        assertEquals(20, copy.position()); // the bytes the first connection already took are skipped
+        assertEquals(1050, segment.getPosition());
+        ByteBuffer rest = ByteBuffer.allocate(80); // runs past the end of the range
+        assertEquals(1050, segment.take(rest, 1040));
+        assertEquals(50, rest.remaining());
+        assertFalse(segment.hasRemaining());
+    }
+
+    @Test
+    void leavesNothingOfDataThatWasAlreadyTaken() {
+        Segment segment = new Segment(0, 99);
+        segment.take(ByteBuffer.allocate(60), 0);
+        ByteBuffer late = ByteBuffer.allocate(50);
+        segment.take(late, 10);
+        assertFalse(late.hasRemaining());
+        assertEquals(60, segment.getPosition());
+    }
+
+    @Test
+    void splitsTheUpperHalfOfWhatIsLeft() {
+        Segment segment = new Segment(0, 999);
+        segment.advance(200);
+        Segment upperHalf = segment.splitUpperHalf(100, 1);
+        assertNotNull(upperHalf);
+        assertEquals(600, upperHalf.getStart());
+        assertEquals(999, upperHalf.getEnd());
+        assertEquals(599, segment.getEnd());
+        assertEquals(400, segment.remaining());
+    }
+
+    @Test
+    void doesNotSplitBelowTwiceTheMinimumSize() {
+        Segment segment = new Segment(0, 999);
+        segment.advance(801);
+        assertNull(segment.splitUpperHalf(100, 1));
+        assertEquals(999, segment.getEnd());
+    }
+
+    @Test
+    void startsTheUpperHalfAtABlockBoundary() {
+        Segment segment = new Segment(0, 9999);
+        segment.advance(1234);
+        Segment upperHalf = segment.splitUpperHalf(1000, 1000);
+        assertNotNull(upperHalf);
+        assertEquals(0, upperHalf.getStart() % 1000);
+        assertEquals(6000, upperHalf.getStart());
+        assertEquals(5999, segment.getEnd());
+        assertEquals(9999, upperHalf.getEnd());
+    }
+
+    @Test
+    void countsFailuresOnlyWithoutProgress() {
+        Segment segment = new Segment(0, 999);
+        assertEquals(1, segment.recordFailure());
+        assertEquals(2, segment.recordFailure());
+        segment.advance(10);
+        assertEquals(1, segment.recordFailure());
+    }
+}
@@ -0,0 +1,93 @@
+package Backend;
+
+import Utils.Environment;
+import Utils.MessageBroker;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingChecksumTest {
+    private static final int TOTAL_SIZE = 300_000;
+    private static final byte[] DATA = new byte[TOTAL_SIZE];
+
+    static {
+        Environment.setMessageBroker(new MessageBroker(System.out));
+        new Random(42).nextBytes(DATA);
+    }
+
+    @TempDir
+    File directory;
+    private SegmentedFileWriter file;
+    private StreamingChecksum checksum;
+
+    @BeforeEach
+    void writeFile() throws IOException {
+        file = new SegmentedFileWriter(new File(directory, "file.bin"), TOTAL_SIZE);
+        file.write(ByteBuffer.wrap(DATA), 0);
+        checksum = new StreamingChecksum(List.of(StreamingChecksum.SHA_256), null);
+    }
+
+    @AfterEach
+    void closeFile() throws IOException {
+        file.close();
+    }
+
+    @Test
+    void mergesRangesWrittenOutOfOrder() throws IOException, NoSuchAlgorithmException {
+        checksum.written(200_000, 100_000);
+        checksum.written(0, 100_000);
+        checksum.catchUp(file);
+        checksum.written(100_000, 100_000); // closes the gap between the two ranges
+        checksum.catchUp(file);
+        assertHashed(TOTAL_SIZE);
+    }
+
+    @Test
+    void stopsAtTheFirstGap() throws IOException, NoSuchAlgorithmException {
+        checksum.written(0, 100_000);
+        checksum.written(150_000, 150_000);
+        checksum.catchUp(file);
+        checksum.catchUp(file);
+        assertHashed(100_000);
+    }
+
+    @Test
+    void doesNotHashTheSameBytesTwice() throws IOException, NoSuchAlgorithmException {
+        checksum.written(0, 100_000);
+        checksum.catchUp(file);
+        checksum.written(50_000, 100_000); // a hedged copy of a range that was partly hashed already
+        checksum.written(120_000, 10_000);
+        checksum.catchUp(file);
+        assertHashed(150_000);
+    }
+
+    @Test
+    void hashesThePartsAlreadyOnDiskOfAResumedDownload() throws IOException, NoSuchAlgorithmException {
+        checksum.alreadyWritten(List.of(new Segment(100_000, 199_999)), TOTAL_SIZE);
+        checksum.catchUp(file);
+        checksum.written(100_000, 100_000);
+        checksum.catchUp(file);
+        assertHashed(TOTAL_SIZE);
+    }
+
+    /**
+     * Completes the checksum without reading the rest of the file, so it only covers what {@link StreamingChecksum#catchUp(SegmentedFileWriter)} hashed.
+     */
+    private void assertHashed(int bytes) throws IOException, NoSuchAlgorithmException {
+        MessageDigest expected = MessageDigest.getInstance(StreamingChecksum.SHA_256);
+        expected.update(DATA, 0, bytes);
+        assertEquals(HexFormat.of().formatHex(expected.digest()), checksum.finish(null).get(StreamingChecksum.SHA_256));
+    }
+}
@@ -0,0 +1,67 @@
+package Enums;
+
+import org.junit.jupiter.api.Test;
+
+import java.text.DecimalFormatSymbols;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UnitConverterTest {
+    @Test
+    void appendsTheSameTextAsFormat() {
+        double[] values = {0, 1, 999, 1000, 1001, 1023.5, 1024, 1536, 1_000_000, 1_048_576, 5_000_000_000.0, 1e13, 1e15};
+        for (double value : values) {
+            assertSameText(value);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10_000; i++) {
+            assertSameText(Math.floor(random.nextDouble() * Math.pow(10, random.nextInt(13))));
+        }
+    }
+
+    @Test
+    void roundsHalfToEvenLikeFormat() {
+        double[] values = {0.125, 0.375, 0.05, 0.15, 0.25, 0.35, 2.5, 3.5, 2.675, 999.95, 999.995, 0.005, 0.015};
+        for (double value : values) {
+            assertSameText(value);
+        }
+        assertEquals("0.12", appendFixed(0.125, 2));
+        assertEquals("0.38", appendFixed(0.375, 2));
+        assertEquals("2.67", appendFixed(2.675, 2)); // just below the tie as a double
+    }
+
+    @Test
+    void keepsTheSignOfNegativeValues() {
+        double[] values = {-1, -0.04, -0.0, -1.25, -1536, -5_000_000_000.0};
+        for (double value : values) {
+            assertSameText(value);
+        }
+        assertEquals("-1.00", appendFixed(-1, 2));
+        assertEquals("-0.0", appendFixed(-0.04, 1));
+        assertEquals("-12.35", appendFixed(-12.345, 2)); // just above the tie as a double
+    }
+
+    @Test
+    void writesTheLeadingZeroOnlyWhenAsked() {
+        StringBuilder builder = new StringBuilder();
+        UnitConverter.appendFixed(builder, 0.5, 1, false);
+        assertEquals(".5", builder.toString());
+        assertEquals("0.5", appendFixed(0.5, 1));
+        assertEquals("100.00", appendFixed(99.999, 2));
+    }
+
+    private static void assertSameText(double bytes) {
+        for (int decimalPlaces = 1; decimalPlaces <= 2; decimalPlaces++) {
+            StringBuilder builder = new StringBuilder();
+            UnitConverter.append(builder, bytes, decimalPlaces);
+            assertEquals(UnitConverter.format(bytes, decimalPlaces), builder.toString(), "Formatting " + bytes + " with " + decimalPlaces + " decimal places");
+        }
+    }
+
+    private static String appendFixed(double value, int decimalPlaces) {
+        StringBuilder builder = new StringBuilder();
+        UnitConverter.appendFixed(builder, value, decimalPlaces, true);
+        return builder.toString().replace(DecimalFormatSymbols.getInstance().getDecimalSeparator(), '.');
+    }
+}